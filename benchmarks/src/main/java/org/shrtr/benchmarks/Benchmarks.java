@@ -0,0 +1,43 @@
+package org.shrtr.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs JMH with the usual command line options, writing the results as JSON to
+ * {@code results/<label>.json} unless {@code -rf}/{@code -rff} say otherwise, so runs on different commits
+ * can be compared. The label defaults to the current time and can be set with {@code -Dbenchmarks.label},
+ * e.g. {@code java -Dbenchmarks.label=$(git rev-parse --short HEAD) -jar target/benchmarks.jar}.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            String label = System.getProperty("benchmarks.label",
+                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+            File results = new File("results", label + ".json");
+            results.getParentFile().mkdirs();
+            options.result(results.getPath());
+        }
+
+        new Runner(options.build()).run();
+    }
+}
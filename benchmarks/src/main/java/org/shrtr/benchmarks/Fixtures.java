@@ -0,0 +1,146 @@
+package org.shrtr.benchmarks;
+
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.shrtr.core.domain.entities.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.PostConstruct;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds the monolith's beans outside of Spring, with the database replaced by stubs, so the benchmarks
+ * measure our code and not the network.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Sets a field the container would have injected, typically an {@code @Value}.
+     */
+    static <T> T inject(T bean, String field, Object value) {
+        Field target = ReflectionUtils.findField(bean.getClass(), field);
+        if (target == null) {
+            throw new IllegalArgumentException(bean.getClass().getSimpleName() + " has no field " + field);
+        }
+        ReflectionUtils.makeAccessible(target);
+        ReflectionUtils.setField(target, bean, value);
+        return bean;
+    }
+
+    /**
+     * Runs the {@code @PostConstruct} methods of the bean.
+     */
+    static <T> T initialize(T bean) {
+        for (Method method : bean.getClass().getDeclaredMethods()) {
+            if (method.isAnnotationPresent(PostConstruct.class)) {
+                ReflectionUtils.makeAccessible(method);
+                ReflectionUtils.invokeMethod(method, bean);
+            }
+        }
+        return bean;
+    }
+
+    static User user() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setUsername("benchmark@shrtr.org");
+        user.setFirstName("Bench");
+        user.setLastName("Mark");
+        user.setPassword("not used");
+        user.setMaxRequests(1000);
+        user.setMaxRequestsWindowMs(1000);
+        user.setRateLimitStrategy(RateLimitStrategy.FIXED_WINDOW);
+        user.setCreatedOn(LocalDateTime.now());
+        user.setUpdatedOn(LocalDateTime.now());
+        return user;
+    }
+
+    static Link link(User owner) {
+        Link link = new Link();
+        link.setId(UUID.randomUUID());
+        link.setOriginal("https://github.com/esteve-mm/link-shortener/blob/main/monolith/src/main/java/org/shrtr/core/CoreApplication.java");
+        link.setShortened("aZ3kP9qX");
+        link.setOwner(owner);
+        link.setCreatedOn(LocalDateTime.now());
+        link.setUpdatedOn(LocalDateTime.now());
+        return link;
+    }
+
+    /**
+     * A {@link JdbcTemplate} whose queries return a single row where every number is 0 and every timestamp
+     * is now, and whose updates always affect one row.
+     */
+    static JdbcTemplate jdbcTemplate() {
+        return new JdbcTemplate() {
+            @Override
+            public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+                try {
+                    return List.of(rowMapper.mapRow(row(), 0));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+                return List.of(elementType.cast(0L));
+            }
+
+            @Override
+            public int update(String sql, Object... args) {
+                return 1;
+            }
+        };
+    }
+
+    static PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    private static ResultSet row() {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLong":
+                            return 0L;
+                        case "getInt":
+                            return 0;
+                        case "getObject":
+                            return LocalDateTime.now();
+                        case "wasNull":
+                            return false;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,62 @@
+package org.shrtr.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.shrtr.core.services.InMemoryRateLimiting;
+import org.shrtr.core.services.RedirectTarget;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decisions of {@link InMemoryRateLimiting} with eight threads redirecting either the same link or links
+ * spread over the whole store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class InMemoryRateLimitingBenchmark {
+
+    private static final int LINKS = 10_000;
+
+    @Param({"FIXED_WINDOW", "GCRA"})
+    public RateLimitStrategy strategy;
+
+    private InMemoryRateLimiting rateLimiting;
+    private RedirectTarget[] targets;
+
+    @Setup
+    public void setUp() {
+        rateLimiting = new InMemoryRateLimiting(new SimpleMeterRegistry());
+        Fixtures.inject(rateLimiting, "stripes", 64);
+        Fixtures.initialize(rateLimiting);
+
+        targets = new RedirectTarget[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            targets[i] = RedirectTarget.builder()
+                    .linkId(UUID.randomUUID())
+                    .shortened("link" + i)
+                    .original("https://shrtr.org/" + i)
+                    .maxRequests(1000)
+                    .maxRequestsWindowMs(1000)
+                    .rateLimitStrategy(strategy)
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public boolean hotLink() {
+        return rateLimiting.limitExceeded(targets[0]);
+    }
+
+    @Benchmark
+    public boolean spreadLinks() {
+        return rateLimiting.limitExceeded(targets[ThreadLocalRandom.current().nextInt(LINKS)]);
+    }
+}
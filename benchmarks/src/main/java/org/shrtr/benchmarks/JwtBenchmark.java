@@ -0,0 +1,66 @@
+package org.shrtr.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.shrtr.core.config.security.JwtPrincipalCache;
+import org.shrtr.core.config.security.JwtTokenUtil;
+import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.domain.repositories.UsersRepository;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating a request: verifying the token on every request, the way {@code JwtTokenFilter} used
+ * to do it, and looking it up in the {@link JwtPrincipalCache}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private JwtTokenUtil jwtTokenUtil;
+    private JwtPrincipalCache principalCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTokenUtil = new JwtTokenUtil(LoggerFactory.getLogger(JwtTokenUtil.class));
+        User user = Fixtures.user();
+        token = jwtTokenUtil.generateAccessToken(user);
+
+        UsersRepository users = (UsersRepository) Proxy.newProxyInstance(
+                UsersRepository.class.getClassLoader(), new Class<?>[]{UsersRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findByUsername")) {
+                        return Optional.of(user);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        principalCache = new JwtPrincipalCache(jwtTokenUtil, users, new SimpleMeterRegistry());
+        Fixtures.inject(principalCache, "maximumSize", 10_000L);
+        Fixtures.initialize(principalCache);
+    }
+
+    @Benchmark
+    public String validateThenGetUsername() {
+        return jwtTokenUtil.validate(token) ? jwtTokenUtil.getUsername(token) : null;
+    }
+
+    @Benchmark
+    public String parse() {
+        Claims claims = jwtTokenUtil.parse(token).orElseThrow();
+        return JwtTokenUtil.getUsername(claims);
+    }
+
+    @Benchmark
+    public User cachedPrincipal() {
+        return principalCache.get(token);
+    }
+}
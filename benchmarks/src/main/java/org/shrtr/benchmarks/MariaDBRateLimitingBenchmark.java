@@ -0,0 +1,56 @@
+package org.shrtr.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.shrtr.core.services.MariaDBRateLimiting;
+import org.shrtr.core.services.RedirectCounterAggregator;
+import org.shrtr.core.services.RedirectTarget;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decisions of {@link MariaDBRateLimiting} with eight threads, against a stubbed database. Only the in-memory
+ * part of the write-behind counters is measured: the window opening once per second and the per-link lock.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class MariaDBRateLimitingBenchmark {
+
+    private static final int LINKS = 10_000;
+
+    private MariaDBRateLimiting rateLimiting;
+    private RedirectTarget[] targets;
+
+    @Setup
+    public void setUp() {
+        RedirectCounterAggregator aggregator = new RedirectCounterAggregator(Fixtures.jdbcTemplate());
+        rateLimiting = new MariaDBRateLimiting(aggregator);
+
+        targets = new RedirectTarget[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            targets[i] = RedirectTarget.builder()
+                    .linkId(UUID.randomUUID())
+                    .shortened("link" + i)
+                    .original("https://shrtr.org/" + i)
+                    .maxRequests(1000)
+                    .maxRequestsWindowMs(1000)
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public boolean hotLink() {
+        return rateLimiting.limitExceeded(targets[0]);
+    }
+
+    @Benchmark
+    public boolean spreadLinks() {
+        return rateLimiting.limitExceeded(targets[ThreadLocalRandom.current().nextInt(LINKS)]);
+    }
+}
@@ -0,0 +1,52 @@
+package org.shrtr.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.shrtr.core.services.ratelimiting.LinkCounterStore;
+import org.shrtr.core.services.ratelimiting.RateLimitAlgorithm;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single decision for every strategy, over a store shared by all benchmark threads.
+ * Run with {@code -t} to see how the lock striping holds up under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimitAlgorithmBenchmark {
+
+    @Param({"FIXED_WINDOW", "TOKEN_BUCKET", "SLIDING_WINDOW_COUNTER", "GCRA"})
+    public RateLimitStrategy strategy;
+
+    @Param({"1", "10000"})
+    public int links;
+
+    private LinkCounterStore store;
+    private RateLimitAlgorithm algorithm;
+    private long[] linkIds;
+
+    @Setup
+    public void setUp() {
+        store = new LinkCounterStore(64);
+        algorithm = RateLimitAlgorithm.of(strategy);
+        linkIds = new long[links * 2];
+        for (int i = 0; i < links; i++) {
+            UUID id = UUID.randomUUID();
+            linkIds[i * 2] = id.getMostSignificantBits();
+            linkIds[i * 2 + 1] = id.getLeastSignificantBits();
+        }
+    }
+
+    @Benchmark
+    public boolean decision() {
+        int link = links == 1 ? 0 : ThreadLocalRandom.current().nextInt(links);
+        return store.limitExceeded(linkIds[link * 2], linkIds[link * 2 + 1], algorithm,
+                1000, TimeUnit.SECONDS.toNanos(1), System.nanoTime());
+    }
+}
@@ -0,0 +1,84 @@
+package org.shrtr.benchmarks;
+
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.shrtr.core.services.ratelimiting.LinkCounterStore;
+import org.shrtr.core.services.ratelimiting.RateLimitAlgorithm;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Replays synthetic traffic against every strategy on a simulated clock and reports the most requests
+ * admitted within any sliding period, relative to the configured limit. 1.00 means the limit holds exactly.
+ *
+ * <ul>
+ *     <li>edge: one request opens a window, then a full burst right before it closes and another one right after</li>
+ *     <li>flood: random arrivals at ten times the limit for twenty periods</li>
+ * </ul>
+ *
+ * Run with {@code java -cp target/benchmarks.jar org.shrtr.benchmarks.RateLimitBurstAccuracy}.
+ */
+public class RateLimitBurstAccuracy {
+
+    private static final long LIMIT = 100;
+    private static final long PERIOD = 1_000_000_000L;
+
+    public static void main(String[] args) {
+        System.out.printf("%-24s %12s %12s %12s%n", "strategy", "edge", "flood", "flood rate");
+        for (RateLimitStrategy strategy : RateLimitStrategy.values()) {
+            RateLimitAlgorithm algorithm = RateLimitAlgorithm.of(strategy);
+            double edge = worstWindow(admitted(algorithm, edge())) / (double) LIMIT;
+            long[] flood = admitted(algorithm, flood());
+            double floodWorst = worstWindow(flood) / (double) LIMIT;
+            double floodRate = flood.length / 20.0 / LIMIT;
+            System.out.printf("%-24s %12.2f %12.2f %12.2f%n", strategy, edge, floodWorst, floodRate);
+        }
+    }
+
+    private static long[] edge() {
+        // The opening request, the rest of the limit right before the window closes, a full limit right after
+        long[] arrivals = new long[(int) (1 + (LIMIT - 1) + LIMIT)];
+        arrivals[0] = 0;
+        for (int i = 1; i < LIMIT; i++) {
+            arrivals[i] = PERIOD - 1000 + i;
+        }
+        for (int i = 0; i < LIMIT; i++) {
+            arrivals[(int) LIMIT + i] = PERIOD + 1000 + i;
+        }
+        return arrivals;
+    }
+
+    private static long[] flood() {
+        Random random = new Random(42);
+        long[] arrivals = new long[(int) (20 * 10 * LIMIT)];
+        for (int i = 0; i < arrivals.length; i++) {
+            arrivals[i] = (long) (random.nextDouble() * 20 * PERIOD);
+        }
+        Arrays.sort(arrivals);
+        return arrivals;
+    }
+
+    private static long[] admitted(RateLimitAlgorithm algorithm, long[] arrivals) {
+        LinkCounterStore store = new LinkCounterStore(1);
+        long[] admitted = new long[arrivals.length];
+        int count = 0;
+        for (long arrival : arrivals) {
+            if (!store.limitExceeded(1, 1, algorithm, LIMIT, PERIOD, arrival)) {
+                admitted[count++] = arrival;
+            }
+        }
+        return Arrays.copyOf(admitted, count);
+    }
+
+    private static int worstWindow(long[] admitted) {
+        int worst = 0;
+        int start = 0;
+        for (int end = 0; end < admitted.length; end++) {
+            while (admitted[end] - admitted[start] >= PERIOD) {
+                start++;
+            }
+            worst = Math.max(worst, end - start + 1);
+        }
+        return worst;
+    }
+}
@@ -0,0 +1,88 @@
+package org.shrtr.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.shrtr.core.config.json.ObjectMapperConfig;
+import org.shrtr.core.controllers.LinksController.LinkDto;
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.events.LinkRedirectedEvent;
+import org.shrtr.core.events.codec.BinaryEventCodec;
+import org.shrtr.core.events.codec.JsonEventCodec;
+import org.shrtr.core.events.records.EventRecords;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the events we publish, with the application's {@link ObjectMapper}, and the mapping of
+ * links to the API's representation. The entity benchmarks serialize the entities as events used to, the
+ * record ones map them to their event records and encode those with either codec.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private LinkRedirectedEvent redirected;
+    private User user;
+    private Link link;
+    private JsonEventCodec jsonCodec;
+    private BinaryEventCodec binaryCodec;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapperConfig().objectMapper();
+        user = Fixtures.user();
+        link = Fixtures.link(user);
+        jsonCodec = new JsonEventCodec(objectMapper);
+        binaryCodec = new BinaryEventCodec();
+        redirected = new LinkRedirectedEvent(LocalDateTime.now(), link.getId(), link.getOriginal(),
+                link.getShortened(), user.getUsername(), 1_250_000L);
+    }
+
+    @Benchmark
+    public byte[] linkRedirectedEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(redirected);
+    }
+
+    @Benchmark
+    public byte[] linkEntity() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(link);
+    }
+
+    @Benchmark
+    public byte[] userEntity() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] linkRecordJson() {
+        return jsonCodec.encode(EventRecords.link(link));
+    }
+
+    @Benchmark
+    public byte[] linkRecordBinary() {
+        return binaryCodec.encode(EventRecords.link(link));
+    }
+
+    @Benchmark
+    public byte[] userRecordBinary() {
+        return binaryCodec.encode(EventRecords.user(user));
+    }
+
+    @Benchmark
+    public byte[] linkRedirectedEventBinary() {
+        return binaryCodec.encode(redirected);
+    }
+
+    @Benchmark
+    public LinkDto linkDto() {
+        return LinkDto.fromLink(link);
+    }
+}
@@ -0,0 +1,63 @@
+package org.shrtr.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.shrtr.core.services.shortcodes.Base62;
+import org.shrtr.core.services.shortcodes.FeistelPermutation;
+import org.shrtr.core.services.shortcodes.ShortCodeGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short code generation as done by {@code LinkService.create}, with the block leases going to a stubbed
+ * database, next to its steps on their own and the decoding done on every redirect.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShortCodeBenchmark {
+
+    private static final long KEY = 7046029254386353131L;
+
+    private ShortCodeGenerator generator;
+    private FeistelPermutation permutation;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        generator = new ShortCodeGenerator(Fixtures.jdbcTemplate(), Fixtures.transactionManager());
+        Fixtures.inject(generator, "blockSize", 1000);
+        Fixtures.inject(generator, "key", KEY);
+        Fixtures.initialize(generator);
+
+        permutation = new FeistelPermutation(Base62.capacity(ShortCodeGenerator.CODE_LENGTH), KEY);
+    }
+
+    @Benchmark
+    public String next() {
+        return ShortCodeGenerator.toCode(generator.nextKey());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String nextContended() {
+        return ShortCodeGenerator.toCode(generator.nextKey());
+    }
+
+    @Benchmark
+    public long permute() {
+        return permutation.permute(sequence++);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base62.encode(sequence++, ShortCodeGenerator.CODE_LENGTH);
+    }
+
+    @Benchmark
+    public long decode() {
+        return Base62.decode("aZ3kP9qX", ShortCodeGenerator.CODE_LENGTH);
+    }
+}
@@ -3,13 +3,30 @@ package org.shrtr.core;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableRabbit
-@SpringBootApplication
+@EnableScheduling
+// R2DBC is only used by the reactive redirect server, which builds its own connection factory
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 public class CoreApplication {
 
+	// Enough for every bean of the context, the timeline is served by the actuator startup endpoint
+	private static final int STARTUP_STEPS = 8192;
+
 	public static void main(String[] args) {
-		SpringApplication.run(CoreApplication.class, args);
+		SpringApplication application = new SpringApplication(CoreApplication.class);
+		application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+		ConfigurableApplicationContext context = application.run(args);
+
+		// Training run of the cds Maven profile: the class data sharing archive is written as the JVM exits
+		if (Boolean.getBoolean("shrtr.cds.training")) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
@@ -0,0 +1,75 @@
+package org.shrtr.core.accesslog;
+
+import lombok.Value;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of an access log record, the same in the ring buffer and in the files.
+ *
+ * <pre>
+ *  0  timestamp     int64, epoch millis, 0 marks the end of a file
+ *  8  latency       int32, microseconds
+ * 12  outcome       int8, {@link RedirectOutcome} ordinal
+ * 13  code length   int8
+ * 14  code          ASCII, up to 18 bytes, longer codes are truncated
+ * </pre>
+ *
+ * Little endian, {@value #SIZE} bytes per record. Files start with the {@value #MAGIC} magic.
+ */
+public final class AccessLogRecordLayout {
+
+    public static final int SIZE = 32;
+    public static final String MAGIC = "SHRTRAL1";
+    static final int MAX_CODE_LENGTH = SIZE - 14;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private AccessLogRecordLayout() {
+    }
+
+    static void write(byte[] slots, int offset, long timestamp, long latencyMicros, RedirectOutcome outcome,
+                      CharSequence code) {
+        LONGS.set(slots, offset, timestamp);
+        INTS.set(slots, offset + 8, (int) Math.min(Integer.MAX_VALUE, latencyMicros));
+        slots[offset + 12] = (byte) outcome.ordinal();
+        int length = code == null ? 0 : Math.min(code.length(), MAX_CODE_LENGTH);
+        slots[offset + 13] = (byte) length;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            slots[offset + 14 + i] = c < 128 ? (byte) c : (byte) '?';
+        }
+    }
+
+    /**
+     * Reads the record at the buffer's position, or returns null at the end of the records.
+     */
+    public static Entry read(ByteBuffer buffer) {
+        if (buffer.remaining() < SIZE) {
+            return null;
+        }
+        ByteBuffer record = buffer.slice(buffer.position(), SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long timestamp = record.getLong(0);
+        if (timestamp == 0) {
+            return null;
+        }
+        buffer.position(buffer.position() + SIZE);
+        byte[] code = new byte[record.get(13)];
+        record.get(14, code);
+        return new Entry(timestamp, record.getInt(8), RedirectOutcome.values()[record.get(12)],
+                new String(code, StandardCharsets.US_ASCII));
+    }
+
+    @Value
+    public static class Entry {
+        long timestamp;
+        int latencyMicros;
+        RedirectOutcome outcome;
+        String code;
+    }
+}
@@ -0,0 +1,88 @@
+package org.shrtr.core.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded buffer of fixed size records, written by any number of request threads and drained by one writer.
+ *
+ * Every slot carries a sequence number telling whose turn it is: producers claim a slot with a single CAS on
+ * the tail, copy the record in and publish it by advancing the slot's sequence. Nothing blocks; when the
+ * buffer is full the record is refused.
+ */
+final class AccessLogRingBuffer {
+
+    private final int capacity;
+    private final int mask;
+    private final byte[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    AccessLogRingBuffer(int requestedCapacity) {
+        capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        mask = capacity - 1;
+        slots = new byte[capacity * AccessLogRecordLayout.SIZE];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(long timestamp, long latencyMicros, RedirectOutcome outcome, CharSequence code) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                // The writer has not drained this slot yet
+                return false;
+            }
+        }
+
+        AccessLogRecordLayout.write(slots, index * AccessLogRecordLayout.SIZE, timestamp, latencyMicros, outcome, code);
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Passes up to {@code max} published records to the sink. Only called by the writer thread.
+     *
+     * @return how many records were drained
+     */
+    int drain(RecordSink sink, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            sink.accept(slots, index * AccessLogRecordLayout.SIZE);
+            sequences.lazySet(index, head + capacity);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    interface RecordSink {
+        void accept(byte[] slots, int offset);
+    }
+}
@@ -0,0 +1,146 @@
+package org.shrtr.core.accesslog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log of the redirects, kept off the request threads.
+ *
+ * Request threads copy a fixed layout record, see {@link AccessLogRecordLayout}, into a lock-free ring buffer
+ * and return; a background thread appends the records to memory-mapped rolling files. Each outcome is sampled
+ * at its own rate, and records that do not fit in the buffer are dropped and counted rather than waited for.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedirectAccessLog {
+
+    private static final int DRAIN_BATCH = 1024;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shrtr.access-log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shrtr.access-log.directory:logs/access}")
+    private Path directory;
+
+    @Value("${shrtr.access-log.buffer-capacity:65536}")
+    private int bufferCapacity;
+
+    @Value("${shrtr.access-log.segment-size:67108864}")
+    private long segmentSize;
+
+    @Value("${shrtr.access-log.max-segments:16}")
+    private int maxSegments;
+
+    @Value("${shrtr.access-log.sampling.found:1.0}")
+    private double foundSampling;
+
+    @Value("${shrtr.access-log.sampling.not-found:1.0}")
+    private double notFoundSampling;
+
+    @Value("${shrtr.access-log.sampling.rate-limited:1.0}")
+    private double rateLimitedSampling;
+
+    private final Map<RedirectOutcome, Double> sampling = new EnumMap<>(RedirectOutcome.class);
+    private final Map<RedirectOutcome, Counter> written = new EnumMap<>(RedirectOutcome.class);
+    private AccessLogRingBuffer buffer;
+    private RollingAccessLogFile file;
+    private Counter dropped;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    private void init() {
+        if (!enabled) {
+            return;
+        }
+        sampling.put(RedirectOutcome.FOUND, foundSampling);
+        sampling.put(RedirectOutcome.NOT_FOUND, notFoundSampling);
+        sampling.put(RedirectOutcome.RATE_LIMITED, rateLimitedSampling);
+        for (RedirectOutcome outcome : RedirectOutcome.values()) {
+            written.put(outcome, meterRegistry.counter("access-log.records", "outcome", outcome.name().toLowerCase()));
+        }
+        dropped = meterRegistry.counter("access-log.dropped");
+
+        buffer = new AccessLogRingBuffer(bufferCapacity);
+        file = new RollingAccessLogFile(directory, segmentSize, maxSegments);
+        Gauge.builder("access-log.buffer.depth", buffer, AccessLogRingBuffer::size)
+                .description("Records waiting to be written")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Logs a redirect, if it is sampled. Never blocks.
+     */
+    public void record(RedirectOutcome outcome, CharSequence shortened, long startNanos) {
+        if (!running) {
+            return;
+        }
+        double rate = sampling.get(outcome);
+        if (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+            return;
+        }
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        if (!buffer.offer(System.currentTimeMillis(), latencyMicros, outcome, shortened)) {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop() {
+        boolean[] failing = {false};
+        AccessLogRingBuffer.RecordSink sink = (slots, offset) -> {
+            try {
+                file.append(slots, offset);
+                written.get(RedirectOutcome.values()[slots[offset + 12]]).increment();
+                failing[0] = false;
+            } catch (IOException e) {
+                dropped.increment();
+                if (!failing[0]) {
+                    log.error("Could not write to the access log, dropping records until it can", e);
+                    failing[0] = true;
+                }
+            }
+        };
+
+        while (running || buffer.size() > 0) {
+            if (buffer.drain(sink, DRAIN_BATCH) == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.error("Could not close the access log", e);
+        }
+    }
+}
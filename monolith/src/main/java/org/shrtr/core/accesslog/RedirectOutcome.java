@@ -0,0 +1,7 @@
+package org.shrtr.core.accesslog;
+
+public enum RedirectOutcome {
+    FOUND,
+    NOT_FOUND,
+    RATE_LIMITED
+}
@@ -0,0 +1,86 @@
+package org.shrtr.core.accesslog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Appends records to memory-mapped segments of a fixed size, {@code redirects-<epoch millis>.log}, starting
+ * a new one when the current one is full and deleting the oldest ones beyond {@code maxSegments}.
+ *
+ * Not thread safe, only used by the access log writer thread.
+ */
+@Slf4j
+final class RollingAccessLogFile {
+
+    private static final String PREFIX = "redirects-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int maxSegments;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+
+    RollingAccessLogFile(Path directory, long segmentSize, int maxSegments) {
+        this.directory = directory;
+        // Whole records only, so a record never spans two segments
+        long records = Math.max(1, (segmentSize - AccessLogRecordLayout.MAGIC.length()) / AccessLogRecordLayout.SIZE);
+        this.segmentSize = AccessLogRecordLayout.MAGIC.length() + records * AccessLogRecordLayout.SIZE;
+        this.maxSegments = maxSegments;
+    }
+
+    void append(byte[] slots, int offset) throws IOException {
+        if (segment == null || segment.remaining() < AccessLogRecordLayout.SIZE) {
+            roll();
+        }
+        segment.put(slots, offset, AccessLogRecordLayout.SIZE);
+    }
+
+    void close() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        segment.force();
+        // Drop the unused end of the segment, readers stop at the end of the file as well as at an empty record
+        long written = segment.position();
+        segment = null;
+        channel.truncate(written);
+        channel.close();
+        channel = null;
+    }
+
+    private void roll() throws IOException {
+        close();
+        Files.createDirectories(directory);
+        Path path = directory.resolve(PREFIX + System.currentTimeMillis() + SUFFIX);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.put(AccessLogRecordLayout.MAGIC.getBytes(StandardCharsets.US_ASCII));
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files
+                    .filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+            log.debug("Deleted access log segment {}", segments.get(i));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.shrtr.core.config.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.domain.repositories.UsersRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which user a verified token belongs to, so clients polling the API do not pay for a signature
+ * check and a user query on every request.
+ *
+ * Tokens are keyed by their SHA-256 digest rather than kept around in clear. The cached users are detached
+ * entities shared by every request of the token, nothing may modify them. They are dropped once a
+ * {@link org.shrtr.core.services.UserService} update commits, and other replicas, which do not hear about the
+ * update, reload them after {@code shrtr.jwt-cache.max-age} at most.
+ */
+@Component
+@RequiredArgsConstructor
+public class JwtPrincipalCache {
+
+    private final JwtTokenUtil jwtTokenUtil;
+    private final UsersRepository userRepo;
+    private final MeterRegistry meterRegistry;
+
+    @org.springframework.beans.factory.annotation.Value("${shrtr.jwt-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @org.springframework.beans.factory.annotation.Value("${shrtr.jwt-cache.max-age:5m}")
+    private Duration maxAge;
+
+    private Cache<String, Principal> cache;
+
+    @PostConstruct
+    private void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Principal>() {
+                    @Override
+                    public long expireAfterCreate(String key, Principal principal, long currentTime) {
+                        if (principal.getClaims().getExpiration() == null) {
+                            return maxAge.toNanos();
+                        }
+                        long millis = principal.getClaims().getExpiration().getTime() - System.currentTimeMillis();
+                        return Math.min(maxAge.toNanos(), TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis)));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Principal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Principal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt-principals");
+    }
+
+    /**
+     * @return the user the token was issued to, or null if the token is not valid or the user is gone
+     */
+    public User get(String token) {
+        Principal principal = cache.get(digest(token), key -> load(token));
+        return principal == null ? null : principal.getUser();
+    }
+
+    /**
+     * Within a transaction, once it commits: dropped earlier, a concurrent request could cache the user as it
+     * was before the update again.
+     */
+    public void invalidateUser(UUID userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(userId);
+            }
+        });
+    }
+
+    private void evict(UUID userId) {
+        cache.asMap().values().removeIf(principal -> principal.getUser().getId().equals(userId));
+    }
+
+    private Principal load(String token) {
+        Claims claims = jwtTokenUtil.parse(token).orElse(null);
+        if (claims == null) {
+            return null;
+        }
+        return userRepo.findByUsername(JwtTokenUtil.getUsername(claims))
+                .map(user -> new Principal(claims, user))
+                .orElse(null);
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Value
+    private static class Principal {
+        Claims claims;
+        User user;
+    }
+}
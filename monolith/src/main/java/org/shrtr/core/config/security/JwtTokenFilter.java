@@ -1,9 +1,9 @@
 package org.shrtr.core.config.security;
 
 import lombok.RequiredArgsConstructor;
-import org.shrtr.core.domain.repositories.UsersRepository;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -16,6 +16,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.List.of;
@@ -25,8 +26,9 @@ import static org.springframework.util.StringUtils.isEmpty;
 @RequiredArgsConstructor
 public class JwtTokenFilter extends OncePerRequestFilter {
 
-    private final JwtTokenUtil jwtTokenUtil;
-    private final UsersRepository userRepo;
+    private static final GrantedAuthority USER = new SimpleGrantedAuthority("USER");
+
+    private final JwtPrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -39,20 +41,20 @@ public class JwtTokenFilter extends OncePerRequestFilter {
             return;
         }
 
-        // Get jwt token and validate
+        // Get jwt token, validate it and get the user identity
         final String token = header.split(" ")[1].trim();
-        if (!jwtTokenUtil.validate(token)) {
+        UserDetails userDetails = principalCache.get(token);
+        if (userDetails == null) {
             chain.doFilter(request, response);
             return;
         }
 
-        // Get user identity and set it on the spring security context
-        UserDetails userDetails = userRepo
-                .findByUsername(jwtTokenUtil.getUsername(token))
-                .orElse(null);
+        // Set the user identity on the spring security context
 
+        List<GrantedAuthority> authorities = new ArrayList<>(userDetails.getAuthorities());
+        authorities.add(USER);
         UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                userDetails, null, List.of(new SimpleGrantedAuthority("USER"))
+                userDetails, null, authorities
         );
 
         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
+import java.util.Optional;
 
 import static java.lang.String.format;
 
@@ -57,9 +58,16 @@ public class JwtTokenUtil {
     }
 
     public boolean validate(String token) {
+        return parse(token).isPresent();
+    }
+
+    /**
+     * Verifies the token and returns its claims, so callers needing several of them only pay for one
+     * signature check.
+     */
+    public Optional<Claims> parse(String token) {
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token);
-            return true;
+            return Optional.of(Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody());
         } catch (SignatureException ex) {
             logger.error("Invalid JWT signature - {}", ex.getMessage());
         } catch (MalformedJwtException ex) {
@@ -71,7 +79,11 @@ public class JwtTokenUtil {
         } catch (IllegalArgumentException ex) {
             logger.error("JWT claims string is empty - {}", ex.getMessage());
         }
-        return false;
+        return Optional.empty();
+    }
+
+    public static String getUsername(Claims claims) {
+        return claims.getSubject().split(",")[1];
     }
 
 }
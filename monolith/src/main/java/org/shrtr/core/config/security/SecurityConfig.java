@@ -1,5 +1,6 @@
 package org.shrtr.core.config.security;
 
+import org.shrtr.core.controllers.LinksController;
 import org.shrtr.core.domain.repositories.UsersRepository;
 import org.slf4j.Logger;
 import org.springframework.context.annotation.Bean;
@@ -92,6 +93,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 // Our public endpoints
                 .antMatchers("/authentication/*").permitAll()
                 .antMatchers("/r/*").permitAll()
+                // Admin endpoints, for users with the ADMIN role
+                .antMatchers("/admin/**").hasAuthority("ADMIN")
                 // Our private endpoints
                 .anyRequest().authenticated();
 
@@ -108,6 +111,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         config.addAllowedOrigin("*");
         config.addAllowedHeader("*");
         config.addAllowedMethod("*");
+        config.addExposedHeader(LinksController.NEXT_CURSOR_HEADER);
         source.registerCorsConfiguration("/**", config);
         return new CorsFilter(source);
     }
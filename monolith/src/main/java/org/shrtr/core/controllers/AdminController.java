@@ -0,0 +1,29 @@
+package org.shrtr.core.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.shrtr.core.services.hotlinks.HotLink;
+import org.shrtr.core.services.hotlinks.HotLinkTracker;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final HotLinkTracker hotLinkTracker;
+
+    @GetMapping("/hot-links")
+    public List<HotLink> getHotLinks(@RequestParam(value = "limit", required = false) Integer limit) {
+        List<HotLink> hotLinks = hotLinkTracker.getHotLinks();
+        if (limit == null || limit >= hotLinks.size()) {
+            return hotLinks;
+        }
+        return hotLinks.subList(0, Math.max(0, limit));
+    }
+
+}
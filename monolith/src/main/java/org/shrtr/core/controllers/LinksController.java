@@ -1,15 +1,37 @@
 package org.shrtr.core.controllers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.Builder;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.shrtr.core.domain.entities.ClickResolution;
 import org.shrtr.core.domain.entities.Link;
 import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.services.LinkCursor;
+import org.shrtr.core.services.LinkPage;
 import org.shrtr.core.services.LinkService;
+import org.shrtr.core.services.stats.ClickRollups;
+import org.shrtr.core.services.stats.LinkStats;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -18,7 +40,12 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class LinksController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_STATS_BUCKETS = 10_000;
+
     private final LinkService linkService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public LinkDto createLink(@RequestBody CreateLinkDto body, @AuthenticationPrincipal User user) {
@@ -26,12 +53,103 @@ public class LinksController {
         return LinkDto.fromLink(link);
     }
 
+    /**
+     * Creates links from a stream of {@link CreateLinkDto}, either as NDJSON or as a JSON array, and streams
+     * the created links back as NDJSON as every chunk commits. Neither the request nor the response is held
+     * in memory as a whole. If the body turns out to be malformed half way, the links created so far are kept
+     * and the response ends with an error line.
+     */
+    @PostMapping(value = "/batch",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> createLinks(HttpServletRequest request, @AuthenticationPrincipal User user) {
+        ObjectWriter writer = objectMapper.writer();
+        StreamingResponseBody body = out -> {
+            try (MappingIterator<CreateLinkDto> links = objectMapper.readerFor(CreateLinkDto.class).readValues(request.getInputStream())) {
+                Iterator<String> originals = new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return links.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return links.next().getOriginal();
+                    }
+                };
+                linkService.createBatch(originals, user, chunk -> {
+                    try {
+                        for (Link link : chunk) {
+                            writeLine(writer, out, LinkDto.fromLink(link));
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (!(e.getCause() instanceof JsonProcessingException)) {
+                    throw e;
+                }
+                writeLine(writer, out, Map.of("error", e.getCause().getMessage()));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static void writeLine(ObjectWriter writer, OutputStream out, Object value) throws IOException {
+        out.write(writer.writeValueAsBytes(value));
+        out.write('\n');
+    }
+
+    /**
+     * Lists the user's links oldest first, a page at a time. When there are more links the response carries
+     * an {@value #NEXT_CURSOR_HEADER} header to pass back as {@code cursor} to get the next page.
+     */
     @GetMapping
-    public List<LinkDto> getLinks(@AuthenticationPrincipal User user) {
-        return linkService.getAllLinks(user)
+    public ResponseEntity<List<LinkDto>> getLinks(@RequestParam(value = "cursor", required = false) String cursor,
+                                                  @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                  @AuthenticationPrincipal User user) {
+        LinkCursor after = null;
+        if (cursor != null) {
+            try {
+                after = LinkCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException();
+            }
+        }
+
+        LinkPage page = linkService.getLinks(user, after, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        List<LinkDto> links = page.getLinks()
                 .stream()
                 .map(LinkDto::fromLink)
                 .collect(Collectors.toList());
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNext() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNext().encode());
+        }
+        return response.body(links);
+    }
+
+    /**
+     * Streams all the user's links as NDJSON, oldest first, whatever their number.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportLinks(@AuthenticationPrincipal User user) {
+        ObjectWriter writer = objectMapper.writer();
+        StreamingResponseBody body = out -> linkService.exportLinks(user, link -> {
+            try {
+                writeLine(writer, out, LinkDto.fromLink(link));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -41,6 +159,30 @@ public class LinksController {
                 .orElseThrow(NotFoundException::new);
     }
 
+    /**
+     * Clicks of the link between {@code from} and {@code to}, the last day by default, in minute, hour or day
+     * buckets. Clicks of the last few seconds may not be counted yet, nor those of the current hour and day in
+     * their coarser buckets.
+     */
+    @GetMapping("/{id}/stats")
+    public LinkStats getLinkStats(@PathVariable("id") UUID id,
+                                  @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+                                  @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+                                  @RequestParam(value = "resolution", required = false) ClickResolution resolution,
+                                  @AuthenticationPrincipal User user) {
+        LocalDateTime end = to == null ? ClickRollups.now() : to.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        LocalDateTime start = from == null ? end.minusDays(1) : from.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        if (!start.isBefore(end)) {
+            throw new BadRequestException();
+        }
+        if (resolution != null && resolution.getUnit().between(start, end) > MAX_STATS_BUCKETS) {
+            throw new BadRequestException();
+        }
+
+        return linkService.getLinkStats(user, id, resolution, start, end)
+                .orElseThrow(NotFoundException::new);
+    }
+
     @DeleteMapping("/{id}")
     public LinkDto deleteLink(@PathVariable("id") UUID id, @AuthenticationPrincipal User user) {
         return linkService.deleteLink(user, id)
@@ -60,7 +202,7 @@ public class LinksController {
         private String original;
         private String shortened;
 
-        static LinkDto fromLink(Link link) {
+        public static LinkDto fromLink(Link link) {
             return LinkDto.builder()
                     .id(link.getId())
                     .original(link.getOriginal())
@@ -2,10 +2,10 @@ package org.shrtr.core.controllers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.accesslog.RedirectAccessLog;
+import org.shrtr.core.accesslog.RedirectOutcome;
 import org.shrtr.core.services.LinkService;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.transaction.annotation.Transactional;
+import org.shrtr.core.services.RedirectTarget;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.view.RedirectView;
 
@@ -16,22 +16,29 @@ import org.springframework.web.servlet.view.RedirectView;
 public class RedirectController {
 
     private final LinkService linkService;
+    private final RedirectAccessLog accessLog;
 
-    @Transactional
     @GetMapping("/{shortened}")
     public RedirectView redirect(@PathVariable("shortened") String shortened) {
-        log.info("Asked for redirect {}", shortened);
-        return linkService.findForRedirect(shortened)
-                .map(link -> {
-                    RedirectView redirectView = new RedirectView();
-                    redirectView.setUrl(link.getOriginal());
-                    log.info("Found redirect from {} to {}", shortened, link.getOriginal());
-                    return redirectView;
-                })
-                .orElseThrow(() -> {
-                    log.info("Not found redirect from {}", shortened);
-                    return new NotFoundException();
-                });
+        long start = System.nanoTime();
+        RedirectTarget target;
+        try {
+            target = linkService.findForRedirect(shortened).orElse(null);
+        } catch (TooManyRequestsException e) {
+            accessLog.record(RedirectOutcome.RATE_LIMITED, shortened, start);
+            throw e;
+        }
+
+        if (target == null) {
+            accessLog.record(RedirectOutcome.NOT_FOUND, shortened, start);
+            throw new NotFoundException();
+        }
+        accessLog.record(RedirectOutcome.FOUND, shortened, start);
+        log.debug("Found redirect from {} to {}", shortened, target.getOriginal());
+
+        RedirectView redirectView = new RedirectView();
+        redirectView.setUrl(target.getOriginal());
+        return redirectView;
     }
 
 }
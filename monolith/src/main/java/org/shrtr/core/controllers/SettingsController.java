@@ -1,6 +1,7 @@
 package org.shrtr.core.controllers;
 
 import lombok.*;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
 import org.shrtr.core.domain.entities.User;
 import org.shrtr.core.services.UserService;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -34,11 +35,13 @@ public class SettingsController {
 
         private long maxRequests;
         private long maxRequestsWindowMs;
+        private RateLimitStrategy strategy;
 
         static RateLimitSettingsDto fromUser(User user) {
             return RateLimitSettingsDto.builder()
                     .maxRequests(user.getMaxRequests())
                     .maxRequestsWindowMs(user.getMaxRequestsWindowMs())
+                    .strategy(user.getRateLimitStrategy())
                     .build();
         }
     }
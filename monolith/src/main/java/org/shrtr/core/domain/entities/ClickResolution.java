@@ -0,0 +1,24 @@
+package org.shrtr.core.domain.entities;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum ClickResolution {
+  MINUTE(ChronoUnit.MINUTES),
+  HOUR(ChronoUnit.HOURS),
+  DAY(ChronoUnit.DAYS);
+
+  private final ChronoUnit unit;
+
+  ClickResolution(ChronoUnit unit) {
+    this.unit = unit;
+  }
+
+  public ChronoUnit getUnit() {
+    return unit;
+  }
+
+  public LocalDateTime bucketOf(LocalDateTime time) {
+    return time.truncatedTo(unit);
+  }
+}
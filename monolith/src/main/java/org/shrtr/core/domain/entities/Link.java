@@ -8,20 +8,27 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "links")
+@Table(name = "links", indexes = @Index(name = "idx_links_owner_created_on_id", columnList = "owner_id, created_on, id"))
 @Setter
 @Getter
 @JsonIgnoreProperties("hibernateLazyInitializer")
 public class Link extends BaseEntity {
   private String original;
-  @Column(unique = true)
   private String shortened;
+
+  // Numeric form of shortened, see ShortCodeGenerator.toKey. Lookups go through this compact, case-sensitive key
+  @Column(name = "short_key", unique = true)
+  private Long shortKey;
+
+  // Clicks, maintained by ClickRollups, never written back from the entity
+  @Column(updatable = false)
   private int counter;
 
-  @Column(name = "redirect_counter", nullable = false)
+  // Maintained by RedirectCounterAggregator, never written back from the entity
+  @Column(name = "redirect_counter", nullable = false, updatable = false)
   private int redirectCounter;
 
-  @Column(name = "rate_limit_window_start")
+  @Column(name = "rate_limit_window_start", updatable = false)
   private LocalDateTime rateLimitWindowStart;
 
   @ManyToOne(fetch = FetchType.LAZY)
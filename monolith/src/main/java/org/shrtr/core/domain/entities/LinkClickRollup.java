@@ -0,0 +1,51 @@
+package org.shrtr.core.domain.entities;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Clicks of a link in one minute, hour or day, bucket starts in UTC.
+ *
+ * Only accessed through JDBC by {@link org.shrtr.core.services.stats.ClickRollups}, mapped so ddl-auto creates
+ * the table.
+ */
+@Entity
+@Table(name = "link_click_rollups",
+        indexes = @Index(name = "idx_link_click_rollups_resolution_bucket", columnList = "resolution, bucket_start"))
+@IdClass(LinkClickRollup.Key.class)
+@Getter
+@Setter
+public class LinkClickRollup {
+
+  @Id
+  @Column(name = "link_id", nullable = false, columnDefinition = "binary(16)")
+  private UUID linkId;
+
+  @Id
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 6)
+  private ClickResolution resolution;
+
+  @Id
+  @Column(name = "bucket_start", nullable = false)
+  private LocalDateTime bucketStart;
+
+  @Column(nullable = false)
+  private long clicks;
+
+  @Getter
+  @Setter
+  @EqualsAndHashCode
+  public static class Key implements Serializable {
+    private UUID linkId;
+    private ClickResolution resolution;
+    private LocalDateTime bucketStart;
+  }
+
+}
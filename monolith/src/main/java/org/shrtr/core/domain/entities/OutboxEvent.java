@@ -0,0 +1,47 @@
+package org.shrtr.core.domain.entities;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * An event written in the same transaction as the change it describes, waiting for
+ * {@link org.shrtr.core.events.OutboxRelay} to publish it.
+ *
+ * Deliberately not a {@link BaseEntity}: it is written and read through JDBC only and must not
+ * get an exchange nor emit events of its own. Mapped so ddl-auto creates the table.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Getter
+@Setter
+public class OutboxEvent {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false)
+  private String exchange;
+
+  @Column(name = "routing_key", nullable = false)
+  private String routingKey;
+
+  // Events with the same key are published in order, on brokers that partition topics by key
+  @Column(name = "partition_key", columnDefinition = "binary(16)")
+  private UUID partitionKey;
+
+  @Column(name = "content_type", nullable = false)
+  private String contentType;
+
+  @Lob
+  @Column(nullable = false, columnDefinition = "mediumblob")
+  private byte[] payload;
+
+  @Column(name = "created_on", nullable = false)
+  private LocalDateTime createdOn;
+
+}
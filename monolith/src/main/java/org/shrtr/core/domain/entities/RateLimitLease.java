@@ -0,0 +1,47 @@
+package org.shrtr.core.domain.entities;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Quota of a link handed out to the replicas so far in one rate limit window.
+ *
+ * Only accessed through JDBC by {@link org.shrtr.core.services.LeasedQuotaRateLimiting}, mapped so
+ * ddl-auto creates the table.
+ */
+@Entity
+@Table(name = "rate_limit_leases", indexes = @Index(name = "idx_rate_limit_leases_expires_at", columnList = "expires_at"))
+@IdClass(RateLimitLease.Key.class)
+@Getter
+@Setter
+public class RateLimitLease {
+
+  @Id
+  @Column(name = "link_id", nullable = false, columnDefinition = "binary(16)")
+  private UUID linkId;
+
+  /** Epoch millis, windows are aligned on multiples of their length so every replica agrees on them */
+  @Id
+  @Column(name = "window_start", nullable = false)
+  private long windowStart;
+
+  @Column(nullable = false)
+  private long granted;
+
+  @Column(name = "expires_at", nullable = false)
+  private long expiresAt;
+
+  @Getter
+  @Setter
+  @EqualsAndHashCode
+  public static class Key implements Serializable {
+    private UUID linkId;
+    private long windowStart;
+  }
+
+}
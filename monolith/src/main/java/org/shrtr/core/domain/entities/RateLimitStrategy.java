@@ -0,0 +1,8 @@
+package org.shrtr.core.domain.entities;
+
+public enum RateLimitStrategy {
+  FIXED_WINDOW,
+  TOKEN_BUCKET,
+  SLIDING_WINDOW_COUNTER,
+  GCRA
+}
@@ -0,0 +1,29 @@
+package org.shrtr.core.domain.entities;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Next sequence number to lease for short code generation, shared by every replica.
+ *
+ * Only accessed through JDBC by {@link org.shrtr.core.services.shortcodes.ShortCodeGenerator}, mapped so
+ * ddl-auto creates the table.
+ */
+@Entity
+@Table(name = "short_code_sequences")
+@Getter
+@Setter
+public class ShortCodeSequence {
+
+  @Id
+  private String name;
+
+  @Column(name = "next_value", nullable = false)
+  private long nextValue;
+
+}
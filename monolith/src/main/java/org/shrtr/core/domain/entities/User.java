@@ -5,11 +5,14 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import javax.persistence.*;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "users")
@@ -31,6 +34,10 @@ public class User extends BaseEntity implements UserDetails {
   @Column(name = "max_requests_time_window_ms", nullable = false)
   private long maxRequestsWindowMs;
 
+  @Enumerated(EnumType.STRING)
+  @Column(name = "rate_limit_strategy")
+  private RateLimitStrategy rateLimitStrategy;
+
   @ManyToMany(fetch = FetchType.EAGER)
   @JoinTable(
     name = "user_roles",
@@ -40,8 +47,14 @@ public class User extends BaseEntity implements UserDetails {
   private Set<Role> roles;
 
   @Override
+  @JsonIgnore
   public Collection<? extends GrantedAuthority> getAuthorities() {
-    return null;
+    if (roles == null) {
+      return List.of();
+    }
+    return roles.stream()
+            .map(role -> new SimpleGrantedAuthority(role.getName()))
+            .collect(Collectors.toList());
   }
 
   @Override
@@ -59,6 +72,11 @@ public class User extends BaseEntity implements UserDetails {
     return enabled;
   }
 
+  public RateLimitStrategy getRateLimitStrategy() {
+    // Users created before strategies were selectable keep the original fixed window
+    return rateLimitStrategy == null ? RateLimitStrategy.FIXED_WINDOW : rateLimitStrategy;
+  }
+
   public boolean hasRedirectRateLimit() {
     return maxRequests > 0 && maxRequestsWindowMs > 0;
   }
@@ -2,9 +2,14 @@ package org.shrtr.core.domain.repositories;
 
 import org.shrtr.core.domain.entities.Link;
 import org.shrtr.core.domain.entities.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -12,7 +17,24 @@ import java.util.UUID;
 @Repository
 public interface LinksRepository extends JpaRepository<Link, UUID> {
   Optional<Link> findAllByOriginal(String originalUrl);
+  Optional<Link> findByShortKey(long shortKey);
+  @EntityGraph(attributePaths = "owner")
+  Optional<Link> findWithOwnerByShortKey(long shortKey);
+  // Only for links whose short_key has not been backfilled yet
   Optional<Link> findByShortened(String shortened);
+  @EntityGraph(attributePaths = "owner")
+  Optional<Link> findWithOwnerByShortened(String shortened);
   Optional<Link> findByOwnerAndId(User user, UUID id);
-  List<Link> findByOwner(User user);
+
+  // Keyset pagination over the (owner_id, created_on, id) index, never counts nor skips rows
+  @Query("SELECT l FROM Link l WHERE l.owner = :owner ORDER BY l.createdOn, l.id")
+  List<Link> findPageByOwner(@Param("owner") User owner, Pageable pageable);
+
+  @Query("SELECT l FROM Link l WHERE l.owner = :owner " +
+          "AND (l.createdOn > :createdOn OR (l.createdOn = :createdOn AND l.id > :id)) " +
+          "ORDER BY l.createdOn, l.id")
+  List<Link> findPageByOwnerAfter(@Param("owner") User owner,
+                                  @Param("createdOn") LocalDateTime createdOn,
+                                  @Param("id") UUID id,
+                                  Pageable pageable);
 }
@@ -0,0 +1,26 @@
+package org.shrtr.core.domain.repositories;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Converts ids to and from the {@code binary(16)} columns Hibernate maps {@link UUID}s to, for the queries
+ * that go through JDBC directly.
+ */
+public final class UuidBytes {
+
+    private UuidBytes() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
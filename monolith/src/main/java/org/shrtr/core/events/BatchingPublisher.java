@@ -0,0 +1,162 @@
+package org.shrtr.core.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands events from request threads to a dedicated publisher thread through a bounded ring buffer.
+ *
+ * Offering an event is constant time and, unless the policy is {@link OverflowPolicy#BLOCK}, never waits.
+ * The publisher thread drains the buffer in batches of up to {@code batchSize} events and passes each batch
+ * to the sink, so the cost of reaching the broker is paid once per batch instead of once per event.
+ */
+@Slf4j
+public class BatchingPublisher<T> {
+
+    public enum OverflowPolicy {
+        /** Drop events that do not fit in the buffer */
+        DROP,
+        /** Once the buffer is three quarters full keep only one in {@code sampleRate} events */
+        SAMPLE,
+        /** Wait up to {@code blockTimeout} for room, then drop */
+        BLOCK
+    }
+
+    private final String name;
+    private final ArrayBlockingQueue<T> buffer;
+    private final int capacity;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final Duration blockTimeout;
+    private final Consumer<List<T>> sink;
+
+    private final Counter published;
+    private final Counter failed;
+    private final Counter droppedOverflow;
+    private final Counter droppedSampling;
+    private final Timer publishTime;
+
+    private final Thread publisher;
+    private volatile boolean running;
+
+    public BatchingPublisher(String name, int capacity, int batchSize, OverflowPolicy overflowPolicy,
+                             int sampleRate, Duration blockTimeout, Consumer<List<T>> sink,
+                             MeterRegistry meterRegistry) {
+        this.name = name;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.blockTimeout = blockTimeout;
+        this.sink = sink;
+
+        Gauge.builder("events.buffer.depth", buffer, ArrayBlockingQueue::size)
+                .tag("buffer", name)
+                .description("Events waiting to be published")
+                .register(meterRegistry);
+        this.published = meterRegistry.counter("events.buffer.published", "buffer", name);
+        this.failed = meterRegistry.counter("events.buffer.failed", "buffer", name);
+        this.droppedOverflow = meterRegistry.counter("events.buffer.dropped", "buffer", name, "reason", "overflow");
+        this.droppedSampling = meterRegistry.counter("events.buffer.dropped", "buffer", name, "reason", "sampling");
+        this.publishTime = Timer.builder("events.buffer.publish")
+                .tag("buffer", name)
+                .description("Time taken to publish a batch")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+
+        this.publisher = new Thread(this::publishLoop, name + "-publisher");
+        this.publisher.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        publisher.start();
+    }
+
+    /**
+     * Stops accepting events and waits for the publisher thread to drain what is left in the buffer.
+     */
+    public void stop(Duration drainTimeout) {
+        running = false;
+        try {
+            publisher.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.isEmpty()) {
+            log.warn("Discarding {} {} events not published before shutdown", buffer.size(), name);
+        }
+    }
+
+    /**
+     * @return whether the event was accepted
+     */
+    public boolean offer(T event) {
+        if (!running) {
+            droppedOverflow.increment();
+            return false;
+        }
+
+        if (overflowPolicy == OverflowPolicy.SAMPLE
+                && buffer.size() >= capacity * 3 / 4
+                && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            droppedSampling.increment();
+            return false;
+        }
+
+        boolean accepted = overflowPolicy == OverflowPolicy.BLOCK ? offerBlocking(event) : buffer.offer(event);
+
+        if (!accepted) {
+            droppedOverflow.increment();
+        }
+        return accepted;
+    }
+
+    private boolean offerBlocking(T event) {
+        try {
+            return buffer.offer(event, blockTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void publishLoop() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                T first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                long start = System.nanoTime();
+                sink.accept(batch);
+                publishTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                published.increment(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failed.increment(batch.size());
+                log.error("Could not publish {} {} events", batch.size(), name, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
@@ -6,18 +6,35 @@ import org.hibernate.event.service.spi.EventListenerRegistry;
 import org.hibernate.event.spi.*;
 import org.hibernate.internal.SessionFactoryImpl;
 import org.hibernate.persister.entity.EntityPersister;
+import org.shrtr.core.domain.entities.BaseEntity;
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.events.records.EventRecords;
+import org.shrtr.core.services.RedirectCache;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+import java.util.UUID;
 
 @Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class DbInterceptorConfiguration {
 
+    // Bookkeeping columns, an update touching only these does not change how the link redirects
+    private static final Set<String> COUNTER_PROPERTIES = Set.of("counter", "redirectCounter", "rateLimitWindowStart");
+    // What cached redirects carry of their owner, see RedirectTarget
+    private static final Set<String> OWNER_PROPERTIES = Set.of("username", "maxRequests", "maxRequestsWindowMs",
+            "rateLimitStrategy");
+
     private final EntityManagerFactory entityManagerFactory;
     private final EventService eventService;
+    private final EventRouting eventRouting;
+    private final RedirectCache redirectCache;
 
     @PostConstruct
     public void configure() {
@@ -28,6 +45,11 @@ public class DbInterceptorConfiguration {
         registry.appendListeners(EventType.POST_INSERT, new PostInsertEventListener() {
             @Override
             public void onPostInsert(PostInsertEvent event) {
+                // Only BaseEntity subtypes have an exchange, bookkeeping tables never emit events
+                if (!(event.getEntity() instanceof BaseEntity)
+                        || !eventRouting.shouldPublish(EventRecords.entityName(event.getEntity()), "created")) {
+                    return;
+                }
                 eventService.entityCreated(event.getEntity());
             }
 
@@ -39,7 +61,13 @@ public class DbInterceptorConfiguration {
         registry.appendListeners(EventType.POST_DELETE, new PostDeleteEventListener() {
             @Override
             public void onPostDelete(PostDeleteEvent event) {
-                eventService.entityDeleted(event.getEntity());
+                if (!(event.getEntity() instanceof BaseEntity)) {
+                    return;
+                }
+                evictRedirects(event.getEntity());
+                if (eventRouting.shouldPublish(EventRecords.entityName(event.getEntity()), "deleted")) {
+                    eventService.entityDeleted(event.getEntity());
+                }
 
             }
 
@@ -51,7 +79,16 @@ public class DbInterceptorConfiguration {
         registry.appendListeners(EventType.POST_UPDATE, new PostUpdateEventListener() {
             @Override
             public void onPostUpdate(PostUpdateEvent event) {
-                eventService.entityUpdated(event.getEntity());
+                if (!(event.getEntity() instanceof BaseEntity)) {
+                    return;
+                }
+                if (redirectChanged(event)) {
+                    evictRedirects(event.getEntity());
+                }
+                if (eventRouting.shouldPublishUpdate(EventRecords.entityName(event.getEntity()),
+                        event.getPersister().getPropertyNames(), event.getDirtyProperties())) {
+                    eventService.entityUpdated(event.getEntity());
+                }
             }
 
             @Override
@@ -61,4 +98,50 @@ public class DbInterceptorConfiguration {
         });
     }
 
-}
\ No newline at end of file
+    private boolean redirectChanged(PostUpdateEvent event) {
+        int[] dirtyProperties = event.getDirtyProperties();
+        if (dirtyProperties == null || dirtyProperties.length == 0) {
+            // Hibernate could not tell what changed
+            return true;
+        }
+        String[] propertyNames = event.getPersister().getPropertyNames();
+        boolean owner = event.getEntity() instanceof User;
+        for (int property : dirtyProperties) {
+            String name = propertyNames[property];
+            if (owner ? OWNER_PROPERTIES.contains(name) : !COUNTER_PROPERTIES.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Within a transaction, once it commits: listeners run when the session flushes, and a redirect loaded
+     * between the eviction and the commit would cache the link as it was before the change again.
+     */
+    private void evictRedirects(Object entity) {
+        Runnable eviction;
+        if (entity instanceof Link link) {
+            String shortened = link.getShortened();
+            eviction = () -> redirectCache.invalidate(shortened);
+        } else if (entity instanceof User user) {
+            // Cached redirects carry the owner's rate limit settings
+            UUID ownerId = user.getId();
+            eviction = () -> redirectCache.invalidateOwner(ownerId);
+        } else {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+
+}
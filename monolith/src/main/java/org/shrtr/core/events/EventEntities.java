@@ -0,0 +1,46 @@
+package org.shrtr.core.events;
+
+import org.shrtr.core.domain.entities.BaseEntity;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ClassUtils;
+
+import javax.persistence.Entity;
+import java.util.List;
+
+/**
+ * The entities that have events, and so an exchange on RabbitMQ or a topic on Kafka: every {@link BaseEntity}.
+ *
+ * They are looked up among the {@code @Entity} classes of the index spring-context-indexer writes at build
+ * time, {@code META-INF/spring.components}, instead of by scanning the classpath. Builds without the index,
+ * from an IDE that skips annotation processing for instance, fall back to scanning.
+ */
+public final class EventEntities {
+
+    private static final List<String> NAMES = load();
+
+    private EventEntities() {
+    }
+
+    /**
+     * @return the entity names, lower case, as used for exchanges and routing keys
+     */
+    public static List<String> names() {
+        return NAMES;
+    }
+
+    private static List<String> load() {
+        ClassPathScanningCandidateComponentProvider entities = new ClassPathScanningCandidateComponentProvider(false);
+        entities.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+        ClassLoader classLoader = BaseEntity.class.getClassLoader();
+        return entities.findCandidateComponents(BaseEntity.class.getPackageName())
+                .stream()
+                .map(BeanDefinition::getBeanClassName)
+                .map(name -> ClassUtils.resolveClassName(name, classLoader))
+                .filter(BaseEntity.class::isAssignableFrom)
+                .map(type -> type.getSimpleName().toLowerCase())
+                .sorted()
+                .toList();
+    }
+}
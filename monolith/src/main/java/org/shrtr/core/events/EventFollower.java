@@ -0,0 +1,26 @@
+package org.shrtr.core.events;
+
+import java.util.Set;
+
+/**
+ * Delivers events to every replica that follows them, rather than sharing them out between replicas, from the
+ * moment it starts following, possibly with a few published just before. For state each replica keeps of its
+ * own, like the short code filter.
+ */
+public interface EventFollower {
+
+    /**
+     * @return stops following once closed
+     */
+    Subscription follow(String exchange, Set<String> routingKeys, Listener listener);
+
+    @FunctionalInterface
+    interface Listener {
+        void onEvent(String routingKey, String contentType, byte[] body);
+    }
+
+    interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
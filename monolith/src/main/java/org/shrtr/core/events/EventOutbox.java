@@ -0,0 +1,83 @@
+package org.shrtr.core.events;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.shrtr.core.events.codec.EventCodec;
+import org.shrtr.core.events.codec.EventCodecException;
+import org.shrtr.core.events.codec.EventCodecs;
+import org.shrtr.core.events.records.EventRecords;
+import org.shrtr.core.events.records.LinkRecord;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Appends events to the {@code outbox_events} table.
+ *
+ * The insert goes through the connection of the transaction in progress, so the event is committed or
+ * rolled back together with the change it describes and never waits on the broker. Entity events are the
+ * same whatever the broker, every {@link EventService} writes them through here and only differs in how
+ * {@link OutboxRelay} publishes them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventOutbox {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EventCodecs codecs;
+
+    public void userCreated(User user) {
+        append("user", "user-registered", user.getId(), EventRecords.user(user));
+    }
+
+    /**
+     * Events carry a record of the entity rather than the entity itself, so writing them never reads
+     * anything the persistence context has not loaded already.
+     */
+    public void entityEvent(Object entity, String event) {
+        Object record = EventRecords.of(entity);
+        if (record == null) {
+            return;
+        }
+        String exchange = EventRecords.entityName(entity);
+        append(exchange, exchange + "." + event, EventRecords.partitionKey(record), record);
+    }
+
+    /**
+     * Links created in bulk are announced with one link.batch-created event per chunk, carrying the same
+     * representation as link.created for each of them.
+     */
+    public void linksCreated(List<Link> links) {
+        EventCodec codec = codecs.getPublishing();
+        try {
+            List<LinkRecord> records = links.stream().map(EventRecords::link).toList();
+            UUID owner = records.isEmpty() ? null : EventRecords.partitionKey(records.get(0));
+            append("link", "link.batch-created", owner, codec.getContentType(), codec.encodeAll(records));
+        } catch (EventCodecException e) {
+            log.error("Could not write {} created links", links.size(), e);
+        }
+    }
+
+    private void append(String exchange, String routingKey, UUID partitionKey, Object record) {
+        EventCodec codec = codecs.getPublishing();
+        try {
+            append(exchange, routingKey, partitionKey, codec.getContentType(), codec.encode(record));
+        } catch (EventCodecException e) {
+            log.error("Could not write {} event", routingKey, e);
+        }
+    }
+
+    private void append(String exchange, String routingKey, UUID partitionKey, String contentType, byte[] payload) {
+        jdbcTemplate.update(
+                "INSERT INTO outbox_events (exchange, routing_key, partition_key, content_type, payload, created_on) VALUES (?, ?, ?, ?, ?, ?)",
+                exchange, routingKey, partitionKey == null ? null : UuidBytes.toBytes(partitionKey), contentType, payload,
+                LocalDateTime.now());
+    }
+}
@@ -0,0 +1,94 @@
+package org.shrtr.core.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether an event is published, before anything about it is mapped or serialized, from the routes in
+ * {@link EventRoutingProperties}.
+ *
+ * Some consumers keep state of their own and would drift if they missed any of the events they rely on. The
+ * short code filter of each replica follows link.created and link.batch-created. The redirect edge mirrors
+ * links from every link.* event and their owners' rate limits from user.updated. Those routes cannot be
+ * disabled or sampled, and startup fails if they are. Updates that only change ignored properties can still
+ * be left out.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventRouting {
+
+    private static final EventRoutingProperties.Route DEFAULT_ROUTE = new EventRoutingProperties.Route();
+
+    static final Set<String> REQUIRED = Set.of(
+            "link.created", "link.batch-created", "link.updated", "link.deleted", "user.updated");
+
+    private final EventRoutingProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> skipped = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void validate() {
+        properties.getRoutes().forEach((entity, actions) -> actions.forEach((action, route) -> {
+            if (REQUIRED.contains(entity + "." + action) && (!route.isEnabled() || route.getSampleRate() < 1)) {
+                throw new IllegalStateException("Route " + entity + "." + action +
+                        " cannot be disabled or sampled, other consumers need every one of these events");
+            }
+        }));
+    }
+
+    public boolean shouldPublish(String entity, String action) {
+        EventRoutingProperties.Route route = route(entity, action);
+        if (!route.isEnabled()) {
+            return skip(entity, action, "disabled");
+        }
+        if (route.getSampleRate() < 1 && ThreadLocalRandom.current().nextDouble() >= route.getSampleRate()) {
+            return skip(entity, action, "sampling");
+        }
+        return true;
+    }
+
+    /**
+     * @param propertyNames all the properties of the entity
+     * @param dirtyProperties indexes of those the update changed, null or empty if unknown
+     */
+    public boolean shouldPublishUpdate(String entity, String[] propertyNames, int[] dirtyProperties) {
+        if (onlyIgnoredPropertiesChanged(route(entity, "updated"), propertyNames, dirtyProperties)) {
+            return skip(entity, "updated", "ignored-properties");
+        }
+        return shouldPublish(entity, "updated");
+    }
+
+    private boolean onlyIgnoredPropertiesChanged(EventRoutingProperties.Route route, String[] propertyNames, int[] dirtyProperties) {
+        if (route.getIgnoredProperties().isEmpty() || dirtyProperties == null || dirtyProperties.length == 0) {
+            return false;
+        }
+        for (int property : dirtyProperties) {
+            if (!route.getIgnoredProperties().contains(propertyNames[property])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private EventRoutingProperties.Route route(String entity, String action) {
+        Map<String, EventRoutingProperties.Route> actions = properties.getRoutes().get(entity);
+        EventRoutingProperties.Route route = actions == null ? null : actions.get(action);
+        return route == null ? DEFAULT_ROUTE : route;
+    }
+
+    private boolean skip(String entity, String action, String reason) {
+        skipped.computeIfAbsent(entity + "." + action + "/" + reason,
+                        key -> meterRegistry.counter("events.routing.skipped", "event", entity + "." + action, "reason", reason))
+                .increment();
+        return false;
+    }
+}
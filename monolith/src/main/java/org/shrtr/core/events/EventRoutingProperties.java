@@ -0,0 +1,51 @@
+package org.shrtr.core.events;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which events are published, {@code shrtr.events.routing.routes.<entity>.<action>.*}, e.g.
+ * {@code shrtr.events.routing.routes.link.redirected.sample-rate=0.1}. Events without a route are all published.
+ * Some routes other consumers depend on cannot be disabled or sampled, see {@link EventRouting}.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "shrtr.events.routing")
+public class EventRoutingProperties {
+
+    /**
+     * Routes by entity, then by action: created, updated, deleted, and registered for users, batch-created
+     * and redirected for links.
+     */
+    private Map<String, Map<String, Route>> routes = new HashMap<>();
+
+    /**
+     * Whether the monolith declares a queue per entity and logs the events it emits itself.
+     */
+    private boolean debugConsumers = false;
+
+    @Getter
+    @Setter
+    public static class Route {
+
+        private boolean enabled = true;
+
+        /**
+         * Share of the events published, between 0 and 1.
+         */
+        private double sampleRate = 1;
+
+        /**
+         * Updates that only change these properties are not published.
+         */
+        private Set<String> ignoredProperties = new HashSet<>();
+    }
+}
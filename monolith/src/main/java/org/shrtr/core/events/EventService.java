@@ -1,11 +1,15 @@
 package org.shrtr.core.events;
 
+import org.shrtr.core.domain.entities.Link;
 import org.shrtr.core.domain.entities.User;
 
+import java.util.List;
+
 public interface EventService {
     void userCreated(User user);
     void entityCreated(Object entity);
     void entityDeleted(Object entity);
     void entityUpdated(Object entity);
+    void linksCreated(List<Link> links);
     void linkRedirected(LinkRedirectedEvent event);
 }
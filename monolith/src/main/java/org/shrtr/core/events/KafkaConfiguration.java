@@ -0,0 +1,82 @@
+package org.shrtr.core.events;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Configuration
+@Profile("kafka")
+public class KafkaConfiguration {
+
+    @Value("${shrtr.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${shrtr.kafka.producer.linger:20ms}")
+    private Duration linger;
+
+    @Value("${shrtr.kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${shrtr.kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    @Value("${shrtr.kafka.producer.buffer-memory:33554432}")
+    private long bufferMemory;
+
+    @Value("${shrtr.kafka.producer.max-block:5s}")
+    private Duration maxBlock;
+
+    /**
+     * One producer for every event. Sends are only acknowledged once every in-sync replica has the batch, and
+     * idempotence keeps them in order per partition through retries, which the outbox relies on. Batches wait
+     * up to {@code linger} to fill, and are compressed as a whole.
+     */
+    @Bean
+    public Producer<byte[], byte[]> kafkaProducer() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.CLIENT_ID_CONFIG, "shrtr-monolith");
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, (int) linger.toMillis());
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        config.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+        // Sends happen on the publisher threads, this bounds how long they wait for room in the buffer
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlock.toMillis());
+        return new KafkaProducer<>(config, new ByteArraySerializer(), new ByteArraySerializer());
+    }
+
+    @Bean
+    public Admin kafkaAdmin() {
+        return Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers));
+    }
+
+    /**
+     * Consumers without a group, for {@link EventFollower} subscriptions that assign themselves every partition.
+     */
+    @Bean
+    public Supplier<Consumer<byte[], byte[]>> kafkaConsumers() {
+        return () -> new KafkaConsumer<>(
+                Map.of(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                        ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false),
+                new ByteArrayDeserializer(),
+                new ByteArrayDeserializer());
+    }
+}
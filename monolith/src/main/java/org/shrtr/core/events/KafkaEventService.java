@@ -0,0 +1,408 @@
+package org.shrtr.core.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.shrtr.core.events.codec.EventCodec;
+import org.shrtr.core.events.codec.EventCodecException;
+import org.shrtr.core.events.codec.EventCodecs;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes events to Kafka instead of RabbitMQ, with the kafka profile.
+ *
+ * Each exchange is a topic of the same name, after {@code shrtr.kafka.topic-prefix}. The routing key and the
+ * content type travel as headers, so consumers see the same events as with RabbitMQ. Redirect events are keyed
+ * by link id, the events of a link land on one partition and are consumed in order. Entity events are keyed by
+ * the partition key the outbox stored with them.
+ *
+ * Redirect events are buffered like with RabbitMQ, and the publisher thread hands them to the producer without
+ * waiting for the broker: the producer batches and compresses them, and the outcome of every send is counted
+ * from its callback.
+ */
+@Slf4j
+@Service
+@Profile("kafka")
+@RequiredArgsConstructor
+public class KafkaEventService implements EventService, OutboxPublisher, EventFollower {
+
+    public static final String ROUTING_KEY_HEADER = "routing-key";
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+    public static final String MESSAGE_ID_HEADER = "message-id";
+
+    /** Events published by replicas whose clock is behind, just before following started, are read as well */
+    private static final Duration FOLLOW_CLOCK_SKEW = Duration.ofSeconds(30);
+
+    private final EventOutbox outbox;
+    private final EventCodecs codecs;
+    private final Producer<byte[], byte[]> producer;
+    private final Admin admin;
+    private final Supplier<Consumer<byte[], byte[]>> consumers;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shrtr.kafka.topic-prefix:shrtr.}")
+    private String topicPrefix;
+
+    @Value("${shrtr.kafka.topics.partitions:12}")
+    private int topicPartitions;
+
+    @Value("${shrtr.kafka.topics.replication-factor:1}")
+    private short topicReplicationFactor;
+
+    @Value("${shrtr.events.redirects.buffer-capacity:65536}")
+    private int redirectsBufferCapacity;
+
+    @Value("${shrtr.events.redirects.batch-size:500}")
+    private int redirectsBatchSize;
+
+    @Value("${shrtr.events.redirects.overflow-policy:DROP}")
+    private BatchingPublisher.OverflowPolicy redirectsOverflowPolicy;
+
+    @Value("${shrtr.events.redirects.sample-rate:10}")
+    private int redirectsSampleRate;
+
+    @Value("${shrtr.events.redirects.block-timeout:50ms}")
+    private Duration redirectsBlockTimeout;
+
+    @Value("${shrtr.events.redirects.drain-timeout:10s}")
+    private Duration redirectsDrainTimeout;
+
+    @Value("${shrtr.events.outbox.confirm-timeout:5s}")
+    private Duration outboxConfirmTimeout;
+
+    @Value("${shrtr.kafka.follow.retry-interval:5s}")
+    private Duration followRetryInterval;
+
+    @Value("${shrtr.kafka.follow.partition-refresh-interval:5m}")
+    private Duration followPartitionRefreshInterval;
+
+    private BatchingPublisher<LinkRedirectedEvent> redirects;
+    private Counter redirectsSent;
+    private Counter redirectsFailed;
+    private final AtomicBoolean redirectsFailing = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        initMeters();
+        createTopics();
+
+        redirects = new BatchingPublisher<>("redirects", redirectsBufferCapacity, redirectsBatchSize,
+                redirectsOverflowPolicy, redirectsSampleRate, redirectsBlockTimeout,
+                this::publishRedirects, meterRegistry);
+        redirects.start();
+    }
+
+    private void initMeters() {
+        redirectsSent = meterRegistry.counter("events.kafka.sent", "stream", "redirects");
+        redirectsFailed = meterRegistry.counter("events.kafka.failed", "stream", "redirects");
+    }
+
+    @PreDestroy
+    void stop() {
+        redirects.stop(redirectsDrainTimeout);
+        producer.flush();
+    }
+
+    /**
+     * One topic per entity, like the exchanges on RabbitMQ. Topics that already exist are left as they are.
+     */
+    private void createTopics() {
+        List<NewTopic> topics = EventEntities.names()
+                .stream()
+                .map(entity -> new NewTopic(topic(entity), topicPartitions, topicReplicationFactor))
+                .toList();
+
+        admin.createTopics(topics).values().forEach((topic, created) -> {
+            try {
+                created.get(outboxConfirmTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof TopicExistsException)) {
+                    log.warn("Could not create topic {}, relying on the broker to create it", topic, e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException e) {
+                log.warn("Timed out creating topic {}, relying on the broker to create it", topic);
+            }
+        });
+    }
+
+    private String topic(String exchange) {
+        return topicPrefix + exchange;
+    }
+
+    /**
+     * Entity events go through the transactional outbox: they are only published if the change that
+     * produced them commits, and writes never wait on the broker.
+     */
+    @Override
+    public void userCreated(User user) {
+        outbox.userCreated(user);
+    }
+
+    @Override
+    public void entityCreated(Object entity) { outbox.entityEvent(entity, "created"); }
+
+    @Override
+    public void entityDeleted(Object entity) { outbox.entityEvent(entity, "deleted"); }
+
+    @Override
+    public void entityUpdated(Object entity) { outbox.entityEvent(entity, "updated"); }
+
+    @Override
+    public void linksCreated(List<Link> links) {
+        outbox.linksCreated(links);
+    }
+
+    @Override
+    public void linkRedirected(LinkRedirectedEvent event) {
+        redirects.offer(event);
+    }
+
+    void publishRedirects(List<LinkRedirectedEvent> batch) {
+        EventCodec codec = codecs.getPublishing();
+        for (LinkRedirectedEvent event : batch) {
+            try {
+                producer.send(record("link", "link.redirected", UuidBytes.toBytes(event.getId()),
+                        codec.getContentType(), codec.encode(event)), this::redirectSent);
+            } catch (EventCodecException e) {
+                log.error("Could not write redirect of {}", event.getShortened(), e);
+            }
+        }
+    }
+
+    private void redirectSent(RecordMetadata metadata, Exception exception) {
+        if (exception == null) {
+            redirectsSent.increment();
+            if (redirectsFailing.compareAndSet(true, false)) {
+                log.info("Publishing redirect events again");
+            }
+            return;
+        }
+        redirectsFailed.increment();
+        // Once per outage rather than once per event, the counter tells how many were lost
+        if (redirectsFailing.compareAndSet(false, true)) {
+            log.error("Could not publish redirect events", exception);
+        }
+    }
+
+    /**
+     * Sends the whole batch, then waits for every send to be acknowledged. The producer is idempotent, so
+     * the events of a partition key stay in outbox order even when sends are retried.
+     */
+    @Override
+    public void publish(List<OutboxMessage> batch) {
+        List<Future<RecordMetadata>> sends = new ArrayList<>(batch.size());
+        for (OutboxMessage outboxMessage : batch) {
+            ProducerRecord<byte[], byte[]> record = record(outboxMessage.getExchange(), outboxMessage.getRoutingKey(),
+                    outboxMessage.getPartitionKey() == null ? null : UuidBytes.toBytes(outboxMessage.getPartitionKey()),
+                    outboxMessage.getContentType(), outboxMessage.getPayload());
+            record.headers().add(MESSAGE_ID_HEADER, String.valueOf(outboxMessage.getId()).getBytes(StandardCharsets.UTF_8));
+            sends.add(producer.send(record));
+        }
+
+        long deadline = System.nanoTime() + outboxConfirmTimeout.toNanos();
+        try {
+            for (Future<RecordMetadata> send : sends) {
+                send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted waiting for outbox events to be acknowledged", e);
+        } catch (ExecutionException e) {
+            throw new KafkaException("Could not publish outbox events", e.getCause());
+        } catch (TimeoutException e) {
+            throw new KafkaException("Outbox events not acknowledged within " + outboxConfirmTimeout, e);
+        }
+    }
+
+    private ProducerRecord<byte[], byte[]> record(String exchange, String routingKey, byte[] key,
+                                                  String contentType, byte[] payload) {
+        ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(topic(exchange), key, payload);
+        record.headers().add(ROUTING_KEY_HEADER, routingKey.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(CONTENT_TYPE_HEADER, contentType.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    /**
+     * Assigns itself every partition of the exchange's topic, without a consumer group, so every replica
+     * reads all the events, starting with those published a little before the call. Everything happens on the
+     * follower's own thread, an unreachable broker does not hold up the caller.
+     *
+     * Partitions are looked up again every {@code shrtr.kafka.follow.partition-refresh-interval}, so added ones
+     * are followed too. When the consumer fails it is replaced after {@code shrtr.kafka.follow.retry-interval},
+     * and the new one carries on from where the old one stopped.
+     */
+    @Override
+    public Subscription follow(String exchange, Set<String> routingKeys, Listener listener) {
+        Follower follower = new Follower(topic(exchange), routingKeys, listener,
+                System.currentTimeMillis() - FOLLOW_CLOCK_SKEW.toMillis());
+        follower.thread.start();
+        return follower;
+    }
+
+    private class Follower implements Runnable, Subscription {
+
+        private final String topic;
+        private final Set<String> routingKeys;
+        private final Listener listener;
+        private final long since;
+        private final Thread thread;
+        /** Offset of the next event to read, by partition, kept when the consumer is replaced */
+        private final Map<TopicPartition, Long> positions = new HashMap<>();
+        private final AtomicReference<Consumer<byte[], byte[]>> consumer = new AtomicReference<>();
+        private volatile boolean following = true;
+        private boolean failing;
+
+        Follower(String topic, Set<String> routingKeys, Listener listener, long since) {
+            this.topic = topic;
+            this.routingKeys = routingKeys;
+            this.listener = listener;
+            this.since = since;
+            this.thread = new Thread(this, "follow-" + topic);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (following) {
+                try (Consumer<byte[], byte[]> current = consumers.get()) {
+                    consumer.set(current);
+                    if (!following) {
+                        return;
+                    }
+                    poll(current);
+                } catch (WakeupException | InterruptException e) {
+                    // closed
+                } catch (Exception e) {
+                    // Once per outage rather than once per retry
+                    if (!failing) {
+                        log.error("Could not follow {}, retrying every {}", topic, followRetryInterval, e);
+                    }
+                    failing = true;
+                    sleep(followRetryInterval);
+                } finally {
+                    consumer.set(null);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            following = false;
+            Consumer<byte[], byte[]> current = consumer.get();
+            if (current != null) {
+                current.wakeup();
+            }
+            thread.interrupt();
+        }
+
+        void poll(Consumer<byte[], byte[]> current) {
+            long refreshAt = 0;
+            while (following) {
+                if (System.currentTimeMillis() >= refreshAt) {
+                    assign(current);
+                    refreshAt = System.currentTimeMillis() + followPartitionRefreshInterval.toMillis();
+                }
+                if (current.assignment().isEmpty()) {
+                    // The topic does not exist yet
+                    sleep(followRetryInterval);
+                    continue;
+                }
+                ConsumerRecords<byte[], byte[]> records = current.poll(Duration.ofSeconds(1));
+                if (failing) {
+                    log.info("Following {} again", topic);
+                    failing = false;
+                }
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    positions.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+                    String routingKey = header(record, ROUTING_KEY_HEADER);
+                    if (routingKeys.contains(routingKey)) {
+                        listener.onEvent(routingKey, header(record, CONTENT_TYPE_HEADER), record.value());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Assigns every partition of the topic, each from where it was left or, for partitions not read yet,
+         * from the first event published since following started.
+         */
+        private void assign(Consumer<byte[], byte[]> current) {
+            List<PartitionInfo> infos = current.partitionsFor(topic);
+            Set<TopicPartition> partitions = infos == null ? Set.of() : infos.stream()
+                    .map(partition -> new TopicPartition(partition.topic(), partition.partition()))
+                    .collect(Collectors.toSet());
+            if (partitions.equals(current.assignment())) {
+                return;
+            }
+            current.assign(partitions);
+
+            List<TopicPartition> unread = partitions.stream().filter(partition -> !positions.containsKey(partition)).toList();
+            if (!unread.isEmpty()) {
+                // End offsets first: an event published after them is found by time or lies past them
+                Map<TopicPartition, Long> ends = current.endOffsets(unread);
+                Map<TopicPartition, OffsetAndTimestamp> published = current.offsetsForTimes(
+                        unread.stream().collect(Collectors.toMap(partition -> partition, partition -> since)));
+                for (TopicPartition partition : unread) {
+                    OffsetAndTimestamp first = published.get(partition);
+                    positions.put(partition, first != null ? first.offset() : ends.get(partition));
+                }
+            }
+            partitions.forEach(partition -> current.seek(partition, positions.get(partition)));
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String header(ConsumerRecord<byte[], byte[]> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,18 @@
+package org.shrtr.core.events;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Value
+public class OutboxMessage {
+
+    long id;
+    String exchange;
+    String routingKey;
+    UUID partitionKey;
+    String contentType;
+    byte[] payload;
+    LocalDateTime createdOn;
+}
@@ -0,0 +1,11 @@
+package org.shrtr.core.events;
+
+import java.util.List;
+
+public interface OutboxPublisher {
+    /**
+     * Publishes the whole batch, in order, and only returns once the broker has accepted all of it.
+     * Any exception leaves the batch in the outbox to be retried.
+     */
+    void publish(List<OutboxMessage> batch);
+}
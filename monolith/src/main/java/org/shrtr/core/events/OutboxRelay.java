@@ -0,0 +1,112 @@
+package org.shrtr.core.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves events from the outbox to the broker.
+ *
+ * Each pass locks the oldest batch of rows, publishes them in order and deletes them in the same
+ * transaction. Replicas running the relay concurrently wait on each other's row locks instead of
+ * publishing the same rows twice. Events are only lost if the broker loses them; a crash between
+ * publishing and committing publishes the batch again, consumers can deduplicate on the message id.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final OutboxPublisher outboxPublisher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shrtr.events.outbox.batch-size:1000}")
+    private int batchSize;
+
+    private TransactionTemplate transactionTemplate;
+    private final AtomicLong lagMs = new AtomicLong();
+    private Counter published;
+    private Counter failures;
+
+    @PostConstruct
+    private void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // Row locks only, gap locks would block the inserts of new events while a batch is being published
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+        Gauge.builder("events.outbox.lag", lagMs, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .description("Age of the oldest event waiting in the outbox")
+                .register(meterRegistry);
+        published = meterRegistry.counter("events.outbox.published");
+        failures = meterRegistry.counter("events.outbox.failures");
+    }
+
+    @Scheduled(fixedDelayString = "${shrtr.events.outbox.relay-interval-ms:200}")
+    void relay() {
+        try {
+            int relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Could not relay outbox events", e);
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxMessage> batch = jdbcTemplate.query(
+                "SELECT id, exchange, routing_key, partition_key, content_type, payload, created_on FROM outbox_events " +
+                        "ORDER BY id LIMIT ? FOR UPDATE",
+                (resultSet, rowNum) -> new OutboxMessage(
+                        resultSet.getLong("id"),
+                        resultSet.getString("exchange"),
+                        resultSet.getString("routing_key"),
+                        partitionKey(resultSet.getBytes("partition_key")),
+                        resultSet.getString("content_type"),
+                        resultSet.getBytes("payload"),
+                        resultSet.getObject("created_on", LocalDateTime.class)),
+                batchSize);
+
+        if (batch.isEmpty()) {
+            lagMs.set(0);
+            return 0;
+        }
+        lagMs.set(Duration.between(batch.get(0).getCreatedOn(), LocalDateTime.now()).toMillis());
+
+        outboxPublisher.publish(batch);
+
+        String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+        jdbcTemplate.update(
+                "DELETE FROM outbox_events WHERE id IN (" + placeholders + ")",
+                batch.stream().map(OutboxMessage::getId).toArray());
+
+        published.increment(batch.size());
+        return batch.size();
+    }
+
+    private static UUID partitionKey(byte[] bytes) {
+        return bytes == null ? null : UuidBytes.fromBytes(bytes);
+    }
+}
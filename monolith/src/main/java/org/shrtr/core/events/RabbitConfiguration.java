@@ -2,6 +2,11 @@ package org.shrtr.core.events;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -9,8 +14,14 @@ import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
+@Profile("!kafka")
 @Slf4j
 public class RabbitConfiguration {
 
@@ -26,6 +37,9 @@ public class RabbitConfiguration {
     @Value("${spring.rabbitmq.password}")
     private String rabbitMqPassword;
 
+    @Value("${spring.rabbitmq.connection-timeout:5s}")
+    private Duration rabbitMqConnectionTimeout;
+
     @Bean
     public CachingConnectionFactory connectionFactory() {
         var cachingConnectionFactory = new CachingConnectionFactory(rabbitMqHost);
@@ -33,12 +47,19 @@ public class RabbitConfiguration {
         cachingConnectionFactory.setPort(rabbitMqPort);
         cachingConnectionFactory.setUsername(rabbitMqUsername);
         cachingConnectionFactory.setPassword(rabbitMqPassword);
-        return new CachingConnectionFactory(rabbitMqHost);
+        // Redirect events are spilled to disk while the broker is unreachable, find out quickly
+        cachingConnectionFactory.setConnectionTimeout((int) rabbitMqConnectionTimeout.toMillis());
+        // The outbox relay only deletes events once the broker has confirmed them
+        cachingConnectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.SIMPLE);
+        return cachingConnectionFactory;
     }
 
     @Bean
     public RabbitAdmin amqpAdmin() {
-        return new RabbitAdmin(connectionFactory());
+        RabbitAdmin admin = new RabbitAdmin(connectionFactory());
+        // The queues events are followed with are declared at runtime and go away with the connection
+        admin.setRedeclareManualDeclarations(true);
+        return admin;
     }
 
     @Bean
@@ -46,6 +67,29 @@ public class RabbitConfiguration {
         return new RabbitTemplate(connectionFactory());
     }
 
+    /**
+     * An exchange per entity, and the debug queues when enabled. RabbitAdmin declares them all at once when
+     * it first connects, and again after every reconnect, instead of startup declaring them one by one.
+     */
+    @Bean
+    public Declarables eventTopology(EventRoutingProperties routingProperties) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (String entity : EventEntities.names()) {
+            declarables.add(new TopicExchange(entity));
+            if (routingProperties.isDebugConsumers()) {
+                String queueName = debugQueueName(entity);
+                declarables.add(new Queue(queueName, false, false, false));
+                // Receive all events related to 'entity'
+                declarables.add(new Binding(queueName, Binding.DestinationType.QUEUE, entity, entity + ".*", null));
+            }
+        }
+        return new Declarables(declarables);
+    }
+
+    static String debugQueueName(String entity) {
+        return entity + "-monolith-debug-queue";
+    }
+
     @Bean
     public SimpleMessageListenerContainer messageListenerContainer() {
         SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
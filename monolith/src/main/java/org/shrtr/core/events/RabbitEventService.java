@@ -1,35 +1,97 @@
 package org.shrtr.core.events;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.reflections.Reflections;
-import org.shrtr.core.domain.entities.BaseEntity;
 import org.shrtr.core.domain.entities.Link;
 import org.shrtr.core.domain.entities.User;
+import org.shrtr.core.events.codec.BinaryEventCodec;
+import org.shrtr.core.events.codec.EventCodec;
+import org.shrtr.core.events.codec.EventCodecException;
+import org.shrtr.core.events.codec.EventCodecs;
+import org.shrtr.core.events.spill.SpillJournal;
+import org.shrtr.core.events.spill.SpillReplayer;
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.connection.ConnectionBlockedEvent;
+import org.springframework.amqp.rabbit.connection.ConnectionUnblockedEvent;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
-import org.springframework.context.annotation.Primary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
-@Primary
 @Service
+@Profile("!kafka")
 @RequiredArgsConstructor
 @Slf4j
-public class RabbitEventService implements EventService {
+public class RabbitEventService implements EventService, OutboxPublisher, EventFollower {
 
-    private final ObjectMapper objectMapper;
+    private final EventCodecs codecs;
     private final RabbitTemplate rabbitTemplate;
     private final RabbitAdmin admin;
     private final SimpleMessageListenerContainer messageListenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final EventOutbox outbox;
+    private final EventRoutingProperties routingProperties;
 
+    @Value("${shrtr.events.redirects.buffer-capacity:65536}")
+    private int redirectsBufferCapacity;
+
+    @Value("${shrtr.events.redirects.batch-size:500}")
+    private int redirectsBatchSize;
+
+    @Value("${shrtr.events.redirects.overflow-policy:DROP}")
+    private BatchingPublisher.OverflowPolicy redirectsOverflowPolicy;
+
+    @Value("${shrtr.events.redirects.sample-rate:10}")
+    private int redirectsSampleRate;
+
+    @Value("${shrtr.events.redirects.block-timeout:50ms}")
+    private Duration redirectsBlockTimeout;
+
+    @Value("${shrtr.events.redirects.drain-timeout:10s}")
+    private Duration redirectsDrainTimeout;
+
+    @Value("${shrtr.events.redirects.confirm-timeout:2s}")
+    private Duration redirectsConfirmTimeout;
+
+    @Value("${shrtr.events.outbox.confirm-timeout:5s}")
+    private Duration outboxConfirmTimeout;
+
+    @Value("${shrtr.events.spill.directory:spill/redirects}")
+    private Path spillDirectory;
+
+    @Value("${shrtr.events.spill.segment-size:16777216}")
+    private int spillSegmentSize;
+
+    @Value("${shrtr.events.spill.max-segments:64}")
+    private int spillMaxSegments;
+
+    @Value("${shrtr.events.spill.retry-interval:1s}")
+    private Duration spillRetryInterval;
+
+    private BatchingPublisher<LinkRedirectedEvent> redirects;
+    private SpillJournal spill;
+    private SpillReplayer spillReplayer;
+    private Counter spilled;
+    private Counter spillDropped;
+    private volatile boolean brokerBlocked;
+    private boolean redirectsFailing;
 
     /**
      * We will create and exchange for each entity: E.g. user, link, linkmetric
@@ -49,77 +111,219 @@ public class RabbitEventService implements EventService {
      */
     @PostConstruct
     void initRabbit (){
-        List<String> entities = GetEntities().stream().map(String::toLowerCase).toList();
-
-        for (String entity: entities) {
-
-            var exchange = new TopicExchange(entity);
-            admin.declareExchange(exchange);
-        }
-
-        // Declare debug queues for the monolith to listen to the event it itself emits
-        for (String entity: entities) {
-
-            String queueName = entity + "-monolith-debug-queue";
-            String routingKey = entity + ".*"; // Receive all events related to 'entity'
-            Queue debugQueue = new Queue(queueName, false, false, false);
-            Binding debugQueueBinding = new Binding(queueName, Binding.DestinationType.QUEUE, entity, routingKey, null);
-            admin.declareQueue(debugQueue);
-            admin.declareBinding(debugQueueBinding);
-            messageListenerContainer.addQueues(debugQueue);
+        // The exchanges are declared along with the rest of the topology, see RabbitConfiguration.eventTopology
+        if (!routingProperties.isDebugConsumers()) {
+            messageListenerContainer.setAutoStartup(false);
+            return;
         }
+        messageListenerContainer.addQueueNames(EventEntities.names()
+                .stream()
+                .map(RabbitConfiguration::debugQueueName)
+                .toArray(String[]::new));
 
         // set-up listener
         messageListenerContainer.setMessageListener(message -> {
             String topic = message.getMessageProperties().getReceivedRoutingKey();
-            String content = new String(message.getBody(), Charset.defaultCharset());
+            String contentType = message.getMessageProperties().getContentType();
+            String content = BinaryEventCodec.CONTENT_TYPE.equals(contentType)
+                    ? message.getBody().length + " bytes of " + contentType
+                    : new String(message.getBody(), Charset.defaultCharset());
             log.info("New Event! {}: {}", topic, content);
         });
     }
 
-    private List<String> GetEntities() {
-        Reflections reflections = new Reflections(BaseEntity.class);
-        return reflections.getSubTypesOf(BaseEntity.class)
-                .stream()
-                .map(Class::getSimpleName)
-                .toList();
+    /**
+     * Debug queues of a previous run would fill up with nobody consuming them. Deleted once started, so
+     * startup does not wait on the broker for it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void deleteDebugQueues() {
+        if (routingProperties.isDebugConsumers()) {
+            return;
+        }
+        try {
+            EventEntities.names().forEach(entity -> admin.deleteQueue(RabbitConfiguration.debugQueueName(entity)));
+        } catch (AmqpException e) {
+            log.warn("Could not delete the debug queues of a previous run", e);
+        }
+    }
+
+    /**
+     * Redirect events are by far the most frequent ones, they are buffered and published in batches
+     * from a dedicated thread so the broker never sits on the redirect path.
+     *
+     * Batches the broker does not confirm in time, or that come while it is down or blocking publishers, go
+     * to a spill journal on disk instead of being lost, and are replayed from there once it is back.
+     */
+    @PostConstruct
+    void startRedirectsPublisher() throws IOException {
+        spill = new SpillJournal(spillDirectory, spillSegmentSize, spillMaxSegments);
+        spilled = meterRegistry.counter("events.spill.appended", "journal", "redirects");
+        spillDropped = meterRegistry.counter("events.spill.dropped", "journal", "redirects");
+        spillReplayer = new SpillReplayer("redirects", spill, this::replayRedirects, redirectsBatchSize,
+                spillRetryInterval, meterRegistry);
+        spillReplayer.start();
+
+        redirects = new BatchingPublisher<>("redirects", redirectsBufferCapacity, redirectsBatchSize,
+                redirectsOverflowPolicy, redirectsSampleRate, redirectsBlockTimeout,
+                this::publishRedirects, meterRegistry);
+        redirects.start();
     }
 
+    @PreDestroy
+    void stopRedirectsPublisher() throws IOException {
+        redirects.stop(redirectsDrainTimeout);
+        // Whatever is left in the journal is replayed on the next start
+        spillReplayer.stop();
+        spill.close();
+    }
+
+    @EventListener
+    void onBlocked(ConnectionBlockedEvent event) {
+        log.warn("RabbitMQ is blocking publishers: {}", event.getReason());
+        brokerBlocked = true;
+    }
+
+    @EventListener
+    void onUnblocked(ConnectionUnblockedEvent event) {
+        log.info("RabbitMQ accepts publishers again");
+        brokerBlocked = false;
+    }
+
+    /**
+     * Entity events go through the transactional outbox: they are only published if the change that
+     * produced them commits, and writes never wait on the broker.
+     */
     @Override
     public void userCreated(User user) {
+        outbox.userCreated(user);
+    }
+
+    @Override
+    public void entityCreated(Object entity) { outbox.entityEvent(entity, "created"); }
+
+    @Override
+    public void entityDeleted(Object entity) { outbox.entityEvent(entity, "deleted"); }
+
+    @Override
+    public void entityUpdated(Object entity) { outbox.entityEvent(entity, "updated"); }
+
+    @Override
+    public void linksCreated(List<Link> links) {
+        outbox.linksCreated(links);
+    }
+
+    @Override
+    public void linkRedirected(LinkRedirectedEvent event) {
+        redirects.offer(event);
+    }
+
+    private void publishRedirects(List<LinkRedirectedEvent> batch) {
+        EventCodec codec = codecs.getPublishing();
+        List<byte[]> payloads = new ArrayList<>(batch.size());
+        for (LinkRedirectedEvent event : batch) {
+            try {
+                payloads.add(codec.encode(event));
+            } catch (EventCodecException e) {
+                log.error("Could not write redirect of {}", event.getShortened(), e);
+            }
+        }
+
+        // Once a batch is spilled the following ones are too until the journal is replayed, to keep them in order
+        if (brokerBlocked || !spill.isEmpty()) {
+            spill(codec.getContentType(), payloads);
+            return;
+        }
         try {
-            String exchange = "user";
-            String routingKey = "user-registered";
-            rabbitTemplate.convertAndSend(exchange, routingKey, objectMapper.writeValueAsString(user));
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            sendConfirmed(codec.getContentType(), payloads);
+            redirectsFailing = false;
+        } catch (AmqpException e) {
+            if (!redirectsFailing) {
+                redirectsFailing = true;
+                log.warn("Could not publish redirect events, spilling them to {}", spillDirectory, e);
+            }
+            spill(codec.getContentType(), payloads);
         }
     }
 
-    public void entityEvent(Object entity, String event) {
+    private void spill(String contentType, List<byte[]> payloads) {
+        int appended = 0;
         try {
-            String exchange = entity.getClass().getSimpleName().toLowerCase();
-            String routingKey = entity.getClass().getSimpleName().toLowerCase() + "." + event;
-            rabbitTemplate.convertAndSend(exchange, routingKey, objectMapper.writeValueAsString(entity));
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            appended = spill.append(contentType, payloads);
+        } catch (IOException e) {
+            log.error("Could not spill {} redirect events", payloads.size(), e);
         }
+        spilled.increment(appended);
+        spillDropped.increment(payloads.size() - appended);
     }
-    @Override
-    public void entityCreated(Object entity) { entityEvent(entity, "created"); }
 
-    @Override
-    public void entityDeleted(Object entity) { entityEvent(entity, "deleted"); }
+    private void replayRedirects(String contentType, List<byte[]> payloads) {
+        if (brokerBlocked) {
+            throw new AmqpException("RabbitMQ is blocking publishers");
+        }
+        sendConfirmed(contentType, payloads);
+    }
+
+    private void sendConfirmed(String contentType, List<byte[]> payloads) {
+        // One channel for the whole batch instead of a checkout per event
+        rabbitTemplate.invoke(operations -> {
+            for (byte[] payload : payloads) {
+                MessageProperties properties = new MessageProperties();
+                properties.setContentType(contentType);
+                operations.send("link", "link.redirected", new Message(payload, properties));
+            }
+            operations.waitForConfirmsOrDie(redirectsConfirmTimeout.toMillis());
+            return null;
+        });
+    }
 
     @Override
-    public void entityUpdated(Object entity) { entityEvent(entity, "updated"); }
+    public void publish(List<OutboxMessage> batch) {
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxMessage outboxMessage : batch) {
+                MessageProperties properties = new MessageProperties();
+                properties.setContentType(outboxMessage.getContentType());
+                properties.setMessageId(String.valueOf(outboxMessage.getId()));
+                properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+                operations.send(outboxMessage.getExchange(), outboxMessage.getRoutingKey(),
+                        new Message(outboxMessage.getPayload(), properties));
+            }
+            operations.waitForConfirmsOrDie(outboxConfirmTimeout.toMillis());
+            return null;
+        });
+    }
 
+    /**
+     * Each call gets a queue of its own that goes away with the replica, or with its connection. RabbitAdmin
+     * declares the queue and its bindings again whenever it reconnects, and the container keeps trying to consume
+     * from it meanwhile instead of giving up.
+     */
     @Override
-    public void linkRedirected(LinkRedirectedEvent event) {
-        try {
-            rabbitTemplate.convertAndSend("link", "link.redirected", objectMapper.writeValueAsString(event));
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+    public Subscription follow(String exchange, Set<String> routingKeys, Listener listener) {
+        Queue queue = new AnonymousQueue();
+        TopicExchange topicExchange = new TopicExchange(exchange);
+        admin.declareExchange(topicExchange);
+        admin.declareQueue(queue);
+        for (String routingKey : routingKeys) {
+            admin.declareBinding(BindingBuilder.bind(queue).to(topicExchange).with(routingKey));
         }
+
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(rabbitTemplate.getConnectionFactory());
+        container.setQueues(queue);
+        container.setMissingQueuesFatal(false);
+        container.setMessageListener(message -> listener.onEvent(
+                message.getMessageProperties().getReceivedRoutingKey(),
+                message.getMessageProperties().getContentType(),
+                message.getBody()));
+        container.start();
+        return () -> {
+            container.stop();
+            try {
+                // Also forgets the declarations, so they are not made again
+                admin.deleteQueue(queue.getName());
+            } catch (AmqpException e) {
+                log.debug("Could not delete queue {}, it goes away with the connection", queue.getName(), e);
+            }
+        };
     }
 }
@@ -0,0 +1,402 @@
+package org.shrtr.core.events.codec;
+
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.shrtr.core.events.LinkRedirectedEvent;
+import org.shrtr.core.events.records.LinkRecord;
+import org.shrtr.core.events.records.OwnerRecord;
+import org.shrtr.core.events.records.RoleRecord;
+import org.shrtr.core.events.records.UserRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary form of the event records.
+ *
+ * A payload starts with the record type, then the record version and the fields in declaration order. A list
+ * has {@link #BATCH} set on the type, followed by its size and each record's length before its version.
+ * Integers are zigzag varints, ids 16 bytes, strings a varint length plus one, 0 for null, then UTF-8,
+ * timestamps epoch microseconds of the UTC wall clock time and enums their ordinal plus one. Optional values
+ * are preceded by a presence byte.
+ *
+ * Fields are only ever appended, together with a new version, so readers skip what they do not know.
+ */
+public class BinaryEventCodec implements EventCodec {
+
+    public static final String CONTENT_TYPE = "application/x-shrtr-event";
+
+    static final int LINK = 1;
+    static final int USER = 2;
+    static final int ROLE = 3;
+    static final int LINK_REDIRECTED = 4;
+    static final int BATCH = 0x80;
+
+    private static final int LINK_REDIRECTED_VERSION = 1;
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public byte[] encode(Object record) {
+        Writer writer = new Writer();
+        writer.writeByte(typeOf(record.getClass()));
+        write(writer, record);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeAll(List<?> records) {
+        if (records.isEmpty()) {
+            throw new EventCodecException("Cannot tell the type of an empty batch");
+        }
+        int type = typeOf(records.get(0).getClass());
+        Writer writer = new Writer();
+        writer.writeByte(type | BATCH);
+        writer.writeLong(records.size());
+        for (Object record : records) {
+            if (typeOf(record.getClass()) != type) {
+                throw new EventCodecException("Records of a batch must all be of the same type");
+            }
+            Writer recordWriter = new Writer();
+            write(recordWriter, record);
+            writer.writeBytes(recordWriter);
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] payload, Class<T> type) {
+        Reader reader = new Reader(payload);
+        int expected = typeOf(type);
+        if (reader.readByte() != expected) {
+            throw new EventCodecException("Not a " + type.getSimpleName());
+        }
+        return type.cast(read(reader, expected));
+    }
+
+    @Override
+    public <T> List<T> decodeAll(byte[] payload, Class<T> type) {
+        Reader reader = new Reader(payload);
+        int expected = typeOf(type);
+        if (reader.readByte() != (expected | BATCH)) {
+            throw new EventCodecException("Not a batch of " + type.getSimpleName());
+        }
+        int size = (int) reader.readLong();
+        List<T> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int end = reader.readLength();
+            records.add(type.cast(read(reader, expected)));
+            // Skips the fields of newer versions
+            reader.position = end;
+        }
+        return records;
+    }
+
+    private static int typeOf(Class<?> type) {
+        if (type == LinkRecord.class) {
+            return LINK;
+        }
+        if (type == UserRecord.class) {
+            return USER;
+        }
+        if (type == RoleRecord.class) {
+            return ROLE;
+        }
+        if (type == LinkRedirectedEvent.class) {
+            return LINK_REDIRECTED;
+        }
+        throw new EventCodecException("No binary form for " + type.getSimpleName());
+    }
+
+    private static void write(Writer writer, Object record) {
+        if (record instanceof LinkRecord link) {
+            writer.writeByte(link.getVersion());
+            writer.writeUuid(link.getId());
+            writer.writeString(link.getOriginal());
+            writer.writeString(link.getShortened());
+            writer.writeOptionalLong(link.getShortKey());
+            writer.writeLong(link.getCounter());
+            writer.writeTimestamp(link.getCreatedOn());
+            writer.writeTimestamp(link.getUpdatedOn());
+            OwnerRecord owner = link.getOwner();
+            writer.writeBoolean(owner != null);
+            if (owner != null) {
+                writer.writeUuid(owner.getId());
+                writer.writeString(owner.getUsername());
+                writer.writeOptionalLong(owner.getMaxRequests());
+                writer.writeOptionalLong(owner.getMaxRequestsWindowMs());
+                writer.writeEnum(owner.getRateLimitStrategy());
+            }
+        } else if (record instanceof UserRecord user) {
+            writer.writeByte(user.getVersion());
+            writer.writeUuid(user.getId());
+            writer.writeString(user.getUsername());
+            writer.writeString(user.getFirstName());
+            writer.writeString(user.getLastName());
+            writer.writeBoolean(user.isEnabled());
+            writer.writeLong(user.getMaxRequests());
+            writer.writeLong(user.getMaxRequestsWindowMs());
+            writer.writeEnum(user.getRateLimitStrategy());
+            writer.writeTimestamp(user.getCreatedOn());
+            writer.writeTimestamp(user.getUpdatedOn());
+        } else if (record instanceof RoleRecord role) {
+            writer.writeByte(role.getVersion());
+            writer.writeUuid(role.getId());
+            writer.writeString(role.getName());
+            writer.writeTimestamp(role.getCreatedOn());
+            writer.writeTimestamp(role.getUpdatedOn());
+        } else if (record instanceof LinkRedirectedEvent redirected) {
+            writer.writeByte(LINK_REDIRECTED_VERSION);
+            writer.writeTimestamp(redirected.getTimestamp());
+            writer.writeUuid(redirected.getId());
+            writer.writeString(redirected.getOriginal());
+            writer.writeString(redirected.getShortened());
+            writer.writeString(redirected.getOwnerUsername());
+            writer.writeOptionalLong(redirected.getLatency());
+        }
+    }
+
+    private static Object read(Reader reader, int type) {
+        int version = reader.readByte();
+        if (version < 1) {
+            throw new EventCodecException("Unknown version " + version);
+        }
+        // Version 1 is the only one so far, later versions only append fields
+        switch (type) {
+            case LINK: {
+                LinkRecord.LinkRecordBuilder link = LinkRecord.builder()
+                        .version(version)
+                        .id(reader.readUuid())
+                        .original(reader.readString())
+                        .shortened(reader.readString())
+                        .shortKey(reader.readOptionalLong())
+                        .counter(reader.readLong())
+                        .createdOn(reader.readTimestamp())
+                        .updatedOn(reader.readTimestamp());
+                if (reader.readBoolean()) {
+                    link.owner(OwnerRecord.builder()
+                            .id(reader.readUuid())
+                            .username(reader.readString())
+                            .maxRequests(reader.readOptionalLong())
+                            .maxRequestsWindowMs(reader.readOptionalLong())
+                            .rateLimitStrategy(reader.readEnum(RateLimitStrategy.values()))
+                            .build());
+                }
+                return link.build();
+            }
+            case USER:
+                return UserRecord.builder()
+                        .version(version)
+                        .id(reader.readUuid())
+                        .username(reader.readString())
+                        .firstName(reader.readString())
+                        .lastName(reader.readString())
+                        .enabled(reader.readBoolean())
+                        .maxRequests(reader.readLong())
+                        .maxRequestsWindowMs(reader.readLong())
+                        .rateLimitStrategy(reader.readEnum(RateLimitStrategy.values()))
+                        .createdOn(reader.readTimestamp())
+                        .updatedOn(reader.readTimestamp())
+                        .build();
+            case ROLE:
+                return RoleRecord.builder()
+                        .version(version)
+                        .id(reader.readUuid())
+                        .name(reader.readString())
+                        .createdOn(reader.readTimestamp())
+                        .updatedOn(reader.readTimestamp())
+                        .build();
+            case LINK_REDIRECTED:
+                return new LinkRedirectedEvent(
+                        reader.readTimestamp(),
+                        reader.readUuid(),
+                        reader.readString(),
+                        reader.readString(),
+                        reader.readString(),
+                        reader.readOptionalLong());
+            default:
+                throw new EventCodecException("Unknown record type " + type);
+        }
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer = new byte[128];
+        private int size;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        void writeLong(long value) {
+            // zigzag, then 7 bits per byte
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+
+        void writeOptionalLong(Long value) {
+            writeBoolean(value != null);
+            if (value != null) {
+                writeLong(value);
+            }
+        }
+
+        void writeUuid(UUID value) {
+            ensure(16);
+            long msb = value.getMostSignificantBits();
+            long lsb = value.getLeastSignificantBits();
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (msb >>> shift);
+            }
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (lsb >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeLong(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeTimestamp(LocalDateTime value) {
+            writeBoolean(value != null);
+            if (value != null) {
+                writeLong(value.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + value.getNano() / 1000);
+            }
+        }
+
+        void writeEnum(Enum<?> value) {
+            // Constants must only ever be appended to the enums written here
+            writeByte(value == null ? 0 : value.ordinal() + 1);
+        }
+
+        void writeBytes(Writer record) {
+            writeLong(record.size);
+            ensure(record.size);
+            System.arraycopy(record.buffer, 0, buffer, size, record.size);
+            size += record.size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() {
+            if (position >= buffer.length) {
+                throw new EventCodecException("Truncated event");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        long readLong() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new EventCodecException("Malformed varint");
+        }
+
+        Long readOptionalLong() {
+            return readBoolean() ? readLong() : null;
+        }
+
+        UUID readUuid() {
+            long msb = 0;
+            long lsb = 0;
+            for (int i = 0; i < 8; i++) {
+                msb = (msb << 8) | readByte();
+            }
+            for (int i = 0; i < 8; i++) {
+                lsb = (lsb << 8) | readByte();
+            }
+            return new UUID(msb, lsb);
+        }
+
+        /**
+         * @return the position after the length prefixed record that follows
+         */
+        int readLength() {
+            long length = readLong();
+            if (length < 0 || length > buffer.length - position) {
+                throw new EventCodecException("Truncated event");
+            }
+            return position + (int) length;
+        }
+
+        String readString() {
+            long length = readLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > buffer.length - position) {
+                throw new EventCodecException("Truncated event");
+            }
+            String value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+
+        LocalDateTime readTimestamp() {
+            if (!readBoolean()) {
+                return null;
+            }
+            long micros = readLong();
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                    (int) Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+        }
+
+        <E extends Enum<E>> E readEnum(E[] values) {
+            int ordinal = readByte();
+            // Unknown constants come from newer writers
+            return ordinal == 0 || ordinal > values.length ? null : values[ordinal - 1];
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.shrtr.core.events.codec;
+
+import java.util.List;
+
+/**
+ * Turns event records into message payloads and back. Every message carries the content type of the codec
+ * that encoded it, consumers pick theirs with {@link EventCodecs#forContentType(String)}.
+ */
+public interface EventCodec {
+
+    String getContentType();
+
+    byte[] encode(Object record);
+
+    byte[] encodeAll(List<?> records);
+
+    <T> T decode(byte[] payload, Class<T> type);
+
+    <T> List<T> decodeAll(byte[] payload, Class<T> type);
+}
@@ -0,0 +1,40 @@
+package org.shrtr.core.events.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The codecs events can be written with. Events are published with the one configured by
+ * {@code shrtr.events.content-type} and read with the one named by their content type.
+ */
+@Component
+public class EventCodecs {
+
+    private final JsonEventCodec json;
+    private final BinaryEventCodec binary = new BinaryEventCodec();
+    private final EventCodec publishing;
+
+    public EventCodecs(ObjectMapper objectMapper,
+                       @Value("${shrtr.events.content-type:application/json}") String contentType) {
+        this.json = new JsonEventCodec(objectMapper);
+        this.publishing = forContentType(contentType);
+    }
+
+    public EventCodec getPublishing() {
+        return publishing;
+    }
+
+    /**
+     * @param contentType null for messages that do not say, they are JSON
+     */
+    public EventCodec forContentType(String contentType) {
+        if (contentType == null || contentType.startsWith(json.getContentType())) {
+            return json;
+        }
+        if (contentType.startsWith(binary.getContentType())) {
+            return binary;
+        }
+        throw new EventCodecException("No codec for " + contentType);
+    }
+}
@@ -0,0 +1,51 @@
+package org.shrtr.core.events.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.IOException;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class JsonEventCodec implements EventCodec {
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String getContentType() {
+        return MessageProperties.CONTENT_TYPE_JSON;
+    }
+
+    @Override
+    public byte[] encode(Object record) {
+        try {
+            return objectMapper.writeValueAsBytes(record);
+        } catch (IOException e) {
+            throw new EventCodecException("Could not serialize " + record.getClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public byte[] encodeAll(List<?> records) {
+        return encode(records);
+    }
+
+    @Override
+    public <T> T decode(byte[] payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new EventCodecException("Could not read " + type.getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public <T> List<T> decodeAll(byte[] payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, objectMapper.getTypeFactory().constructCollectionType(List.class, type));
+        } catch (IOException e) {
+            throw new EventCodecException("Could not read a list of " + type.getSimpleName(), e);
+        }
+    }
+}
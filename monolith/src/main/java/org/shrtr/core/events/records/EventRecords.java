@@ -0,0 +1,116 @@
+package org.shrtr.core.events.records;
+
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.entities.Role;
+import org.shrtr.core.domain.entities.User;
+
+import java.util.UUID;
+
+/**
+ * Maps entities to the records their events carry.
+ *
+ * Only reads state that is already loaded: an owner that is still a proxy contributes its id, taken from the
+ * proxy, and nothing else. Mapping never goes to the database, however and whenever it is called.
+ */
+public final class EventRecords {
+
+    private EventRecords() {
+    }
+
+    /**
+     * @return the record of the entity, or null for entities that have none
+     */
+    public static Object of(Object entity) {
+        if (entity instanceof Link link) {
+            return link(link);
+        }
+        if (entity instanceof User user) {
+            return user(user);
+        }
+        if (entity instanceof Role role) {
+            return role(role);
+        }
+        return null;
+    }
+
+    /**
+     * @return the exchange and routing key prefix of the entity's events
+     */
+    public static String entityName(Object entity) {
+        return Hibernate.getClass(entity).getSimpleName().toLowerCase();
+    }
+
+    /**
+     * @return the id events about the record are ordered by: a link's events go with those of the other
+     * links of its owner, so a consumer never sees a link before the batch that created it
+     */
+    public static UUID partitionKey(Object record) {
+        if (record instanceof LinkRecord link) {
+            return link.getOwner() != null ? link.getOwner().getId() : link.getId();
+        }
+        if (record instanceof UserRecord user) {
+            return user.getId();
+        }
+        if (record instanceof RoleRecord role) {
+            return role.getId();
+        }
+        return null;
+    }
+
+    public static LinkRecord link(Link link) {
+        return LinkRecord.builder()
+                .id(link.getId())
+                .original(link.getOriginal())
+                .shortened(link.getShortened())
+                .shortKey(link.getShortKey())
+                .counter(link.getCounter())
+                .createdOn(link.getCreatedOn())
+                .updatedOn(link.getUpdatedOn())
+                .owner(owner(link.getOwner()))
+                .build();
+    }
+
+    public static UserRecord user(User user) {
+        return UserRecord.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .enabled(user.isEnabled())
+                .maxRequests(user.getMaxRequests())
+                .maxRequestsWindowMs(user.getMaxRequestsWindowMs())
+                .rateLimitStrategy(user.getRateLimitStrategy())
+                .createdOn(user.getCreatedOn())
+                .updatedOn(user.getUpdatedOn())
+                .build();
+    }
+
+    public static RoleRecord role(Role role) {
+        return RoleRecord.builder()
+                .id(role.getId())
+                .name(role.getName())
+                .createdOn(role.getCreatedOn())
+                .updatedOn(role.getUpdatedOn())
+                .build();
+    }
+
+    private static OwnerRecord owner(User owner) {
+        if (owner == null) {
+            return null;
+        }
+        if (owner instanceof HibernateProxy proxy && proxy.getHibernateLazyInitializer().isUninitialized()) {
+            return OwnerRecord.builder()
+                    .id((UUID) proxy.getHibernateLazyInitializer().getIdentifier())
+                    .build();
+        }
+        return OwnerRecord.builder()
+                .id(owner.getId())
+                .username(owner.getUsername())
+                .maxRequests(owner.getMaxRequests())
+                .maxRequestsWindowMs(owner.getMaxRequestsWindowMs())
+                .rateLimitStrategy(owner.getRateLimitStrategy())
+                .build();
+    }
+}
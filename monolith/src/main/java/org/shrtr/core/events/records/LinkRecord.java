@@ -0,0 +1,30 @@
+package org.shrtr.core.events.records;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Value
+@Builder
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LinkRecord {
+
+    public static final int VERSION = 1;
+
+    @Builder.Default
+    int version = VERSION;
+    UUID id;
+    String original;
+    String shortened;
+    Long shortKey;
+    long counter;
+    LocalDateTime createdOn;
+    LocalDateTime updatedOn;
+    OwnerRecord owner;
+
+}
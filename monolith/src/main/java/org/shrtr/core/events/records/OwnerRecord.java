@@ -0,0 +1,28 @@
+package org.shrtr.core.events.records;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+
+import java.util.UUID;
+
+/**
+ * Owner of a link as carried by its events. Only the id is known when the owner was not loaded with the link.
+ */
+@Value
+@Builder
+@Jacksonized
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OwnerRecord {
+
+    UUID id;
+    String username;
+    Long maxRequests;
+    Long maxRequestsWindowMs;
+    RateLimitStrategy rateLimitStrategy;
+
+}
@@ -0,0 +1,26 @@
+package org.shrtr.core.events.records;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Value
+@Builder
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class RoleRecord {
+
+    public static final int VERSION = 1;
+
+    @Builder.Default
+    int version = VERSION;
+    UUID id;
+    String name;
+    LocalDateTime createdOn;
+    LocalDateTime updatedOn;
+
+}
@@ -0,0 +1,33 @@
+package org.shrtr.core.events.records;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Value
+@Builder
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserRecord {
+
+    public static final int VERSION = 1;
+
+    @Builder.Default
+    int version = VERSION;
+    UUID id;
+    String username;
+    String firstName;
+    String lastName;
+    boolean enabled;
+    long maxRequests;
+    long maxRequestsWindowMs;
+    RateLimitStrategy rateLimitStrategy;
+    LocalDateTime createdOn;
+    LocalDateTime updatedOn;
+
+}
@@ -0,0 +1,155 @@
+package org.shrtr.core.events.spill;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of events that could not be published, in memory-mapped segments of a fixed size,
+ * {@code spill-<sequence>.journal}, replayed oldest first.
+ *
+ * Events are appended to the current segment. {@link #nextToReplay()} seals it when there is nothing older
+ * left, so the replayer only ever reads segments nobody writes to anymore, and a segment is deleted once it
+ * has been replayed. Segments left by a previous run are replayed first. The journal holds at most
+ * {@code maxSegments} segments, events that do not fit are dropped.
+ *
+ * Appended events survive the process, not the machine: segments are only forced to disk when sealed.
+ */
+@Slf4j
+public class SpillJournal implements AutoCloseable {
+
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final Deque<SpillSegment> sealed = new ArrayDeque<>();
+    private SpillSegment current;
+    private long nextSequence;
+
+    public SpillJournal(Path directory, int segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(2, maxSegments);
+
+        Files.createDirectories(directory);
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files
+                    .filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path path : segments) {
+            nextSequence = Math.max(nextSequence, sequence(path) + 1);
+            try {
+                SpillSegment segment = SpillSegment.open(path);
+                if (segment.isReplayed()) {
+                    segment.delete();
+                } else {
+                    sealed.add(segment);
+                }
+            } catch (IOException e) {
+                log.error("Skipping unreadable spill journal segment {}", path, e);
+            }
+        }
+        if (!sealed.isEmpty()) {
+            log.info("Found {} spill journal segments to replay in {}", sealed.size(), directory);
+        }
+    }
+
+    /**
+     * @return whether every event appended has been replayed
+     */
+    public synchronized boolean isEmpty() {
+        return sealed.isEmpty() && (current == null || current.isEmpty());
+    }
+
+    /**
+     * @return how many of the payloads were appended, in order; the others did not fit in the journal
+     */
+    public synchronized int append(String contentType, List<byte[]> payloads) throws IOException {
+        int appended = 0;
+        for (byte[] payload : payloads) {
+            if (current == null || !current.getContentType().equals(contentType) || !current.append(payload)) {
+                if (!roll(contentType) || !current.append(payload)) {
+                    break;
+                }
+            }
+            appended++;
+        }
+        return appended;
+    }
+
+    /**
+     * @return the oldest segment with events left to replay, or null if there are none
+     */
+    synchronized SpillSegment nextToReplay() throws IOException {
+        SpillSegment oldest = sealed.peekFirst();
+        while (oldest != null && oldest.isReplayed()) {
+            sealed.removeFirst().delete();
+            oldest = sealed.peekFirst();
+        }
+        if (oldest == null && current != null && !current.isEmpty()) {
+            seal();
+            oldest = sealed.peekFirst();
+        }
+        return oldest;
+    }
+
+    public synchronized int getSegments() {
+        return sealed.size() + (current == null ? 0 : 1);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (SpillSegment segment : sealed) {
+            segment.close();
+        }
+        sealed.clear();
+        if (current != null) {
+            if (current.isEmpty()) {
+                current.delete();
+            } else {
+                current.close();
+            }
+            current = null;
+        }
+    }
+
+    private boolean roll(String contentType) throws IOException {
+        if (getSegments() >= maxSegments) {
+            return false;
+        }
+        if (current != null) {
+            seal();
+        }
+        current = SpillSegment.create(directory.resolve(String.format("%s%020d%s", PREFIX, nextSequence++, SUFFIX)),
+                segmentSize, contentType);
+        return true;
+    }
+
+    private void seal() {
+        current.force();
+        sealed.addLast(current);
+        current = null;
+    }
+
+    private static long sequence(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.shrtr.core.events.spill;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Drains a {@link SpillJournal} from a dedicated thread, oldest events first, a batch at a time.
+ *
+ * A batch only counts as replayed once the publisher returns, which it must not do before the broker has
+ * confirmed the whole batch. Until then the batch is retried every {@code retryInterval}, the events after it
+ * wait, so they reach the broker in the order they were spilled. A crash between the confirm and the journal
+ * noting it replays the batch again.
+ */
+@Slf4j
+public class SpillReplayer {
+
+    @FunctionalInterface
+    public interface Publisher {
+        /**
+         * Returns once the broker has confirmed every payload, throws otherwise.
+         */
+        void publish(String contentType, List<byte[]> payloads) throws Exception;
+    }
+
+    private final String name;
+    private final SpillJournal journal;
+    private final Publisher publisher;
+    private final int batchSize;
+    private final Duration retryInterval;
+
+    private final Counter replayed;
+    private final Counter failures;
+
+    private final Thread replayer;
+    private volatile boolean running;
+    private boolean failing;
+
+    public SpillReplayer(String name, SpillJournal journal, Publisher publisher, int batchSize,
+                         Duration retryInterval, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.journal = journal;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+        this.retryInterval = retryInterval;
+
+        Gauge.builder("events.spill.segments", journal, SpillJournal::getSegments)
+                .tag("journal", name)
+                .description("Spill journal segments waiting to be replayed")
+                .register(meterRegistry);
+        this.replayed = meterRegistry.counter("events.spill.replayed", "journal", name);
+        this.failures = meterRegistry.counter("events.spill.replay-failures", "journal", name);
+
+        this.replayer = new Thread(this::replayLoop, name + "-spill-replayer");
+        this.replayer.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        replayer.start();
+    }
+
+    public void stop() {
+        running = false;
+        replayer.interrupt();
+        try {
+            replayer.join(retryInterval.toMillis() + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void replayLoop() {
+        while (running) {
+            try {
+                SpillSegment segment = journal.nextToReplay();
+                if (segment == null) {
+                    Thread.sleep(retryInterval.toMillis());
+                    continue;
+                }
+                List<byte[]> batch = segment.read(batchSize);
+                publisher.publish(segment.getContentType(), batch);
+                segment.replayed(batch.size());
+                replayed.increment(batch.size());
+                if (failing) {
+                    failing = false;
+                    log.info("Replaying spilled {} events again", name);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                failures.increment();
+                if (!failing) {
+                    failing = true;
+                    log.warn("Could not replay spilled {} events, retrying every {}", name, retryInterval, e);
+                }
+                try {
+                    Thread.sleep(retryInterval.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.shrtr.core.events.spill;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped file of a fixed size holding events of one content type.
+ *
+ * <pre>
+ *   header, {@value #HEADER_SIZE} bytes
+ *     0  magic "SHRTRSJ1"
+ *     8  int    position up to which events have been replayed
+ *     12 short  length of the content type
+ *     14        content type, US-ASCII
+ *   records, until one with a length of 0
+ *     0  int    payload length
+ *     4  int    CRC-32 of the payload
+ *     8         payload
+ * </pre>
+ *
+ * The length of a record is written last, and a record whose checksum does not match ends the segment, so
+ * one torn by a crash is never replayed. Ints are big-endian.
+ */
+final class SpillSegment {
+
+    static final String MAGIC = "SHRTRSJ1";
+    static final int HEADER_SIZE = 128;
+    private static final int REPLAYED_OFFSET = 8;
+    private static final int CONTENT_TYPE_OFFSET = 12;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String contentType;
+    private int writePosition;
+    private int replayed;
+
+    private SpillSegment(Path path, FileChannel channel, MappedByteBuffer buffer, String contentType,
+                         int writePosition, int replayed) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.contentType = contentType;
+        this.writePosition = writePosition;
+        this.replayed = replayed;
+    }
+
+    static SpillSegment create(Path path, int size, String contentType) throws IOException {
+        byte[] type = contentType.getBytes(StandardCharsets.US_ASCII);
+        if (CONTENT_TYPE_OFFSET + 2 + type.length > HEADER_SIZE) {
+            throw new IllegalArgumentException("Content type too long: " + contentType);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.put(0, MAGIC.getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(REPLAYED_OFFSET, HEADER_SIZE);
+        buffer.putShort(CONTENT_TYPE_OFFSET, (short) type.length);
+        buffer.put(CONTENT_TYPE_OFFSET + 2, type);
+        return new SpillSegment(path, channel, buffer, contentType, HEADER_SIZE, HEADER_SIZE);
+    }
+
+    /**
+     * Opens a segment left by a previous run, its records end at the first empty or damaged one.
+     */
+    static SpillSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        // Created but not written yet when the process died, or not a segment at all
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Not a spill journal segment, " + size + " bytes: " + path);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        byte[] magic = new byte[MAGIC.length()];
+        buffer.get(0, magic);
+        int typeLength = buffer.getShort(CONTENT_TYPE_OFFSET);
+        int replayed = buffer.getInt(REPLAYED_OFFSET);
+        if (!MAGIC.equals(new String(magic, StandardCharsets.US_ASCII))
+                || typeLength < 0 || CONTENT_TYPE_OFFSET + 2 + typeLength > HEADER_SIZE
+                || replayed < HEADER_SIZE || replayed > buffer.capacity()) {
+            channel.close();
+            throw new IOException("Not a spill journal segment: " + path);
+        }
+        byte[] type = new byte[typeLength];
+        buffer.get(CONTENT_TYPE_OFFSET + 2, type);
+
+        SpillSegment segment = new SpillSegment(path, channel, buffer, new String(type, StandardCharsets.US_ASCII),
+                HEADER_SIZE, replayed);
+        int position = HEADER_SIZE;
+        while (segment.readable(position)) {
+            position += RECORD_HEADER_SIZE + buffer.getInt(position);
+        }
+        segment.writePosition = position;
+        return segment;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    boolean isEmpty() {
+        return writePosition == HEADER_SIZE;
+    }
+
+    /**
+     * @return false if the payload does not fit in what is left of the segment
+     */
+    boolean append(byte[] payload) {
+        // Room for the record and for the empty length after it
+        if (writePosition + RECORD_HEADER_SIZE + payload.length + 4 > buffer.capacity()) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.put(writePosition + RECORD_HEADER_SIZE, payload);
+        buffer.putInt(writePosition, payload.length);
+        writePosition += RECORD_HEADER_SIZE + payload.length;
+        return true;
+    }
+
+    boolean isReplayed() {
+        return replayed >= writePosition;
+    }
+
+    /**
+     * @return up to {@code max} payloads following the ones already replayed
+     */
+    List<byte[]> read(int max) {
+        List<byte[]> payloads = new ArrayList<>();
+        int position = replayed;
+        while (payloads.size() < max && position < writePosition) {
+            byte[] payload = new byte[buffer.getInt(position)];
+            buffer.get(position + RECORD_HEADER_SIZE, payload);
+            payloads.add(payload);
+            position += RECORD_HEADER_SIZE + payload.length;
+        }
+        return payloads;
+    }
+
+    /**
+     * Marks the next {@code count} payloads as replayed, they are not read again, even after a restart.
+     */
+    void replayed(int count) {
+        for (int i = 0; i < count; i++) {
+            replayed += RECORD_HEADER_SIZE + buffer.getInt(replayed);
+        }
+        buffer.putInt(REPLAYED_OFFSET, replayed);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    private boolean readable(int position) {
+        if (position + RECORD_HEADER_SIZE > buffer.capacity()) {
+            return false;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+            return false;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(position + RECORD_HEADER_SIZE, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+}
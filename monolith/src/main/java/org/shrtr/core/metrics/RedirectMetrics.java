@@ -0,0 +1,67 @@
+package org.shrtr.core.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanosecond timers for every stage a redirect goes through, published as {@code redirect.stage} tagged with the
+ * stage, with their p50, p99 and p999, plus the number of statements each redirect sends to the database.
+ */
+@Component
+@RequiredArgsConstructor
+public class RedirectMetrics {
+
+    public enum Stage {
+        /** From entering to leaving the Spring Security filter chain */
+        SECURITY,
+        /** Finding the link and its owner, from the cache or the database */
+        LOOKUP,
+        /** Loading a link and its owner from the database on a cache miss */
+        DB_LOOKUP,
+        RATE_LIMIT,
+        /** Handing the redirect event to the publisher */
+        EVENT_ENQUEUE,
+        /** Rendering the redirect view into the response */
+        RESPONSE_WRITE,
+        /** The whole request, from the first filter on */
+        TOTAL
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+    private DistributionSummary queries;
+
+    @PostConstruct
+    private void init() {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("redirect.stage")
+                    .tag("stage", stage.name().toLowerCase().replace('_', '-'))
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .register(meterRegistry));
+        }
+        queries = DistributionSummary.builder("redirect.db.queries")
+                .description("Statements sent to the database per redirect")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, a value of {@link System#nanoTime()}.
+     */
+    public void record(Stage stage, long startNanos) {
+        timers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordQueries(int count) {
+        queries.record(count);
+    }
+}
@@ -0,0 +1,98 @@
+package org.shrtr.core.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.shrtr.core.metrics.RedirectMetrics.Stage;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+
+/**
+ * Times the stages of a redirect that happen outside of {@link org.shrtr.core.services.LinkService}: one
+ * filter on each side of the security filter chain and an interceptor around the rendering of the view.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class RedirectMetricsConfiguration implements WebMvcConfigurer {
+
+    private static final String REDIRECTS = "/r/*";
+    private static final String SECURITY_START = RedirectMetricsConfiguration.class.getName() + ".securityStart";
+    private static final String RENDER_START = RedirectMetricsConfiguration.class.getName() + ".renderStart";
+
+    private final RedirectMetrics redirectMetrics;
+
+    @Bean
+    public FilterRegistrationBean<Filter> redirectTimingFilter() {
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+            long start = System.nanoTime();
+            QueryCountingDataSource.reset();
+            request.setAttribute(SECURITY_START, start);
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                redirectMetrics.record(Stage.TOTAL, start);
+                redirectMetrics.recordQueries(QueryCountingDataSource.count());
+            }
+        });
+        registration.addUrlPatterns(REDIRECTS);
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<Filter> redirectSecurityTimingFilter() {
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+            Object start = request.getAttribute(SECURITY_START);
+            if (start != null) {
+                redirectMetrics.record(Stage.SECURITY, (long) start);
+            }
+            chain.doFilter(request, response);
+        });
+        registration.addUrlPatterns(REDIRECTS);
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                   ModelAndView modelAndView) {
+                request.setAttribute(RENDER_START, System.nanoTime());
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                Object start = request.getAttribute(RENDER_START);
+                if (start != null) {
+                    redirectMetrics.record(Stage.RESPONSE_WRITE, (long) start);
+                }
+            }
+        }).addPathPatterns("/r/**");
+    }
+}
@@ -0,0 +1,54 @@
+package org.shrtr.core.reactive;
+
+import io.r2dbc.spi.Row;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.shrtr.core.services.RedirectTarget;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Loads redirects with the non-blocking MariaDB driver, link and owner in a single query.
+ */
+public class ReactiveLinksRepository {
+
+    private static final String SELECT_REDIRECT =
+            "SELECT l.id, l.original, l.shortened, u.id AS owner_id, u.username, u.max_requests, " +
+                    "u.max_requests_time_window_ms, u.rate_limit_strategy " +
+                    "FROM links l JOIN users u ON u.id = l.owner_id ";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveLinksRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<RedirectTarget> findByShortKey(long shortKey) {
+        return databaseClient.sql(SELECT_REDIRECT + "WHERE l.short_key = :shortKey")
+                .bind("shortKey", shortKey)
+                .map((row, metadata) -> toRedirectTarget(row))
+                .one();
+    }
+
+    // Only for links whose short_key has not been backfilled yet
+    public Mono<RedirectTarget> findByShortened(String shortened) {
+        return databaseClient.sql(SELECT_REDIRECT + "WHERE l.shortened = :shortened")
+                .bind("shortened", shortened)
+                .map((row, metadata) -> toRedirectTarget(row))
+                .one();
+    }
+
+    private static RedirectTarget toRedirectTarget(Row row) {
+        String strategy = row.get("rate_limit_strategy", String.class);
+        return RedirectTarget.builder()
+                .linkId(UuidBytes.fromBytes(row.get("id", byte[].class)))
+                .original(row.get("original", String.class))
+                .shortened(row.get("shortened", String.class))
+                .ownerId(UuidBytes.fromBytes(row.get("owner_id", byte[].class)))
+                .ownerUsername(row.get("username", String.class))
+                .maxRequests(row.get("max_requests", Long.class))
+                .maxRequestsWindowMs(row.get("max_requests_time_window_ms", Long.class))
+                .rateLimitStrategy(strategy == null ? RateLimitStrategy.FIXED_WINDOW : RateLimitStrategy.valueOf(strategy))
+                .build();
+    }
+}
@@ -0,0 +1,160 @@
+package org.shrtr.core.reactive;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.accesslog.RedirectAccessLog;
+import org.shrtr.core.accesslog.RedirectOutcome;
+import org.shrtr.core.events.EventRouting;
+import org.shrtr.core.events.EventService;
+import org.shrtr.core.events.LinkRedirectedEvent;
+import org.shrtr.core.services.RateLimiting;
+import org.shrtr.core.services.RedirectCache;
+import org.shrtr.core.services.RedirectTarget;
+import org.shrtr.core.services.hotlinks.HotLinkTracker;
+import org.shrtr.core.services.stats.ClickRollups;
+import org.shrtr.core.services.shortcodes.ShortCodeFilter;
+import org.shrtr.core.services.shortcodes.ShortCodeGenerator;
+import org.shrtr.core.services.shortcodes.ShortKeyBackfill;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Serves {@code /r/{shortened}} on its own port from a Netty event loop, as an alternative to
+ * {@link org.shrtr.core.controllers.RedirectController} for click bursts: no request ever holds a thread while
+ * waiting on the database.
+ *
+ * Answers like the controller does, 302 to the original, 404 for unknown codes and 429 when the owner's rate
+ * limit is exceeded. Redirects share the {@link RedirectCache} with the blocking stack, misses are loaded with
+ * the non-blocking MariaDB driver. Redirect events are handed to {@link EventService}, which only enqueues
+ * them, so the overflow policy should not be BLOCK when this server is enabled.
+ */
+@Slf4j
+@Component
+@Profile("reactive-redirects")
+@RequiredArgsConstructor
+public class ReactiveRedirectServer {
+
+    private final RedirectCache redirectCache;
+    private final RateLimiting rateLimiting;
+    private final EventService eventService;
+    private final EventRouting eventRouting;
+    private final ShortKeyBackfill shortKeyBackfill;
+    private final ShortCodeFilter shortCodeFilter;
+    private final RedirectAccessLog accessLog;
+    private final HotLinkTracker hotLinkTracker;
+    private final ClickRollups clickRollups;
+
+    @Value("${shrtr.reactive-redirects.port:8081}")
+    private int port;
+
+    @Value("${shrtr.reactive-redirects.r2dbc-url:r2dbc:pool:mariadb://localhost:3306/shrtdb}")
+    private String r2dbcUrl;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    private ConnectionFactory connectionFactory;
+    private ReactiveLinksRepository links;
+    private DisposableServer server;
+
+    @PostConstruct
+    private void start() {
+        connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(r2dbcUrl)
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        links = new ReactiveLinksRepository(DatabaseClient.create(connectionFactory));
+
+        server = HttpServer.create()
+                .port(port)
+                .route(routes -> routes.get("/r/{shortened}",
+                        (request, response) -> redirect(request.param("shortened"), response)))
+                .bindNow();
+        log.info("Reactive redirects listening on port {}", server.port());
+    }
+
+    @PreDestroy
+    void stop() {
+        server.disposeNow();
+        if (connectionFactory instanceof reactor.core.Disposable disposable) {
+            disposable.dispose();
+        }
+    }
+
+    private Mono<Void> redirect(String shortened, HttpServerResponse response) {
+        long start = System.nanoTime();
+        return find(shortened)
+                .doOnNext(hotLinkTracker::record)
+                .flatMap(target -> limitExceeded(target).map(exceeded -> exceeded
+                        ? reject(HttpResponseStatus.TOO_MANY_REQUESTS, RedirectOutcome.RATE_LIMITED, shortened, response, start)
+                        : sendRedirect(target, response, start)))
+                .defaultIfEmpty(Mono.defer(() -> reject(HttpResponseStatus.NOT_FOUND, RedirectOutcome.NOT_FOUND, shortened, response, start)))
+                .flatMap(Function.identity());
+    }
+
+    private Mono<RedirectTarget> find(String shortened) {
+        RedirectTarget cached = redirectCache.getIfPresent(shortened);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+
+        long key = ShortCodeGenerator.toKey(shortened);
+        if (key < 0 || !shortCodeFilter.mightExist(key)) {
+            return Mono.empty();
+        }
+        Mono<RedirectTarget> target = links.findByShortKey(key);
+        if (shortKeyBackfill.mayBeKeyless(shortened)) {
+            target = target.switchIfEmpty(Mono.defer(() -> links.findByShortened(shortened)));
+        }
+        return target.doOnNext(loaded -> redirectCache.put(shortened, loaded));
+    }
+
+    private Mono<Boolean> limitExceeded(RedirectTarget target) {
+        if (!rateLimiting.isEnabled(target)) {
+            return Mono.just(false);
+        }
+        if (rateLimiting.isBlocking()) {
+            return Mono.fromCallable(() -> rateLimiting.limitExceeded(target))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return Mono.just(rateLimiting.limitExceeded(target));
+    }
+
+    private Mono<Void> sendRedirect(RedirectTarget target, HttpServerResponse response, long start) {
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (eventRouting.shouldPublish("link", "redirected")) {
+            eventService.linkRedirected(new LinkRedirectedEvent(LocalDateTime.now(), target.getLinkId(),
+                    target.getOriginal(), target.getShortened(), target.getOwnerUsername(), latency));
+        }
+        clickRollups.recordClick(target.getLinkId());
+        accessLog.record(RedirectOutcome.FOUND, target.getShortened(), start);
+        return response.sendRedirect(target.getOriginal()).then();
+    }
+
+    private Mono<Void> reject(HttpResponseStatus status, RedirectOutcome outcome, String shortened,
+                              HttpServerResponse response, long start) {
+        accessLog.record(outcome, shortened, start);
+        return response.status(status).send().then();
+    }
+}
@@ -1,66 +1,61 @@
 package org.shrtr.core.services;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.*;
-import org.shrtr.core.domain.entities.Link;
-import org.shrtr.core.domain.entities.User;
-import org.springframework.context.annotation.Primary;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.services.ratelimiting.LinkCounterStore;
+import org.shrtr.core.services.ratelimiting.RateLimitAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
-@Primary
+@Slf4j
 @Service
+@ConditionalOnProperty(name = "shrtr.rate-limiting.strategy", havingValue = "in-memory", matchIfMissing = true)
 @RequiredArgsConstructor
 public class InMemoryRateLimiting implements RateLimiting {
 
-    HashMap<UUID, Pair> linksRequests;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shrtr.rate-limiting.in-memory.stripes:64}")
+    private int stripes;
+
+    LinkCounterStore linksRequests;
 
     @PostConstruct
     private void init() {
-        linksRequests = new HashMap<>();
-    }
-
-    @Getter
-    @Setter
-    @AllArgsConstructor
-    @RequiredArgsConstructor
-    private static class Pair {
-        private LocalDateTime windowStart;
-        private Long requests;
+        linksRequests = new LinkCounterStore(stripes);
+        Gauge.builder("rate-limiting.in-memory.links", linksRequests, LinkCounterStore::size)
+                .description("Links whose rate limit state is held in memory")
+                .register(meterRegistry);
     }
 
     @Override
-    public boolean isEnabled(User user) {
-        return user.hasRedirectRateLimit();
+    public boolean isEnabled(RedirectTarget target) {
+        return target.hasRedirectRateLimit();
     }
 
     @Override
-    public boolean limitExceeded(Link link, User user) {
-        boolean exceeded = false;
-
-        var linkRequests = linksRequests.get(link.getId());
-
-        if (linkRequests == null){
-            // first redirect ever
-            linksRequests.put(link.getId(), new Pair(LocalDateTime.now(), 1L));
-        }
-        else if (Duration.between(linkRequests.windowStart, LocalDateTime.now()).toMillis() > user.getMaxRequestsWindowMs()) {
-            // expired window
-            linkRequests.setRequests(1L);
-            linkRequests.setWindowStart( LocalDateTime.now());
-        }
-        else {
-            // current window
-            if (linkRequests.getRequests() >= user.getMaxRequests()){
-                exceeded = true;
-            }
-            linkRequests.setRequests(linkRequests.getRequests() + 1);
-        }
+    public boolean limitExceeded(RedirectTarget target) {
+        UUID linkId = target.getLinkId();
+        return linksRequests.limitExceeded(
+                linkId.getMostSignificantBits(),
+                linkId.getLeastSignificantBits(),
+                RateLimitAlgorithm.of(target.getRateLimitStrategy()),
+                target.getMaxRequests(),
+                TimeUnit.MILLISECONDS.toNanos(target.getMaxRequestsWindowMs()),
+                System.nanoTime());
+    }
 
-        return exceeded;
+    @Scheduled(fixedDelayString = "${shrtr.rate-limiting.in-memory.sweep-interval-ms:60000}")
+    void evictIdleLinks() {
+        int evicted = linksRequests.evictExpired(System.nanoTime());
+        log.debug("Evicted rate limit state of {} idle links", evicted);
     }
 }
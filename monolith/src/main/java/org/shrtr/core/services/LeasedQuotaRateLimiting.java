@@ -0,0 +1,211 @@
+package org.shrtr.core.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiting shared by every replica, without a database write per redirect.
+ *
+ * Each replica leases slices of a link's quota for the current window from the {@code rate_limit_leases}
+ * table and decides locally until its slice is used up, so the database is asked once per slice. The leases
+ * of a window never add up to more than the limit, so a link is never let through more often than allowed.
+ * The error is the other way around: quota leased by a replica that does not use it is refused elsewhere,
+ * at most {@code slice-fraction} of the limit per other replica.
+ *
+ * Windows are fixed and aligned on multiples of their length, owners' strategies are only honoured by
+ * {@link InMemoryRateLimiting}. When the database cannot be reached redirects are let through, and the link's
+ * lease is not retried for {@code retry-after-failure}, so redirects do not queue up behind a database that
+ * answers with a timeout.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "shrtr.rate-limiting.strategy", havingValue = "leased")
+@RequiredArgsConstructor
+public class LeasedQuotaRateLimiting implements RateLimiting {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shrtr.rate-limiting.leased.slice-fraction:0.05}")
+    @Setter(AccessLevel.PACKAGE)
+    private double sliceFraction;
+
+    @Value("${shrtr.rate-limiting.leased.max-slice:1000}")
+    @Setter(AccessLevel.PACKAGE)
+    private long maxSlice;
+
+    @Value("${shrtr.rate-limiting.leased.retry-after-failure:5s}")
+    @Setter(AccessLevel.PACKAGE)
+    private Duration retryAfterFailure;
+
+    private final Map<UUID, Lease> leases = new ConcurrentHashMap<>();
+    private TransactionTemplate leaseTransaction;
+    private Counter leased;
+    private Counter failures;
+
+    @PostConstruct
+    void init() {
+        // Callers may be inside a transaction, the lease must be visible to other replicas straight away
+        leaseTransaction = new TransactionTemplate(transactionManager);
+        leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        leaseTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+        Gauge.builder("rate-limiting.leased.links", leases, Map::size)
+                .description("Links this replica holds a lease for")
+                .register(meterRegistry);
+        leased = meterRegistry.counter("rate-limiting.leased.slices");
+        failures = meterRegistry.counter("rate-limiting.leased.failures");
+    }
+
+    @Override
+    public boolean isEnabled(RedirectTarget target) {
+        return target.hasRedirectRateLimit();
+    }
+
+    @Override
+    public boolean limitExceeded(RedirectTarget target) {
+        long now = System.currentTimeMillis();
+        long windowMs = target.getMaxRequestsWindowMs();
+        long windowStart = now - Math.floorMod(now, windowMs);
+
+        UUID linkId = target.getLinkId();
+        Lease lease = leases.get(linkId);
+        if (lease == null || lease.windowStart != windowStart) {
+            lease = leases.compute(linkId, (id, current) -> current != null && current.windowStart == windowStart
+                    ? current
+                    : new Lease(windowStart, windowStart + windowMs));
+        }
+
+        if (lease.tryAcquire() || now < lease.retryAt) {
+            return false;
+        }
+        synchronized (lease) {
+            if (lease.tryAcquire() || System.currentTimeMillis() < lease.retryAt) {
+                return false;
+            }
+            if (lease.exhausted) {
+                return true;
+            }
+
+            long granted;
+            try {
+                granted = leaseSlice(linkId, lease, target.getMaxRequests());
+            } catch (DataAccessException e) {
+                failures.increment();
+                lease.retryAt = System.currentTimeMillis() + retryAfterFailure.toMillis();
+                log.warn("Could not lease rate limit quota for link {}, letting its redirects through for {}",
+                        linkId, retryAfterFailure, e);
+                return false;
+            }
+
+            if (granted == 0) {
+                // Everything left in the window has been leased already
+                lease.exhausted = true;
+                return true;
+            }
+            leased.increment();
+            lease.remaining.addAndGet(granted - 1);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isBlocking() {
+        // Leasing a slice goes to the database
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${shrtr.rate-limiting.leased.sweep-interval-ms:60000}")
+    void evictExpiredLeases() {
+        long now = System.currentTimeMillis();
+        leases.values().removeIf(lease -> lease.expiresAt <= now);
+        int deleted = jdbcTemplate.update("DELETE FROM rate_limit_leases WHERE expires_at <= ?", now);
+        log.debug("Deleted {} expired rate limit leases", deleted);
+    }
+
+    private long leaseSlice(UUID linkId, Lease lease, long maxRequests) {
+        long slice = Math.max(1, Math.min(maxSlice, (long) Math.ceil(maxRequests * sliceFraction)));
+        byte[] id = UuidBytes.toBytes(linkId);
+
+        return leaseTransaction.execute(status -> {
+            List<Long> granted = jdbcTemplate.queryForList(
+                    "SELECT granted FROM rate_limit_leases WHERE link_id = ? AND window_start = ? FOR UPDATE",
+                    Long.class, id, lease.windowStart);
+
+            if (granted.isEmpty()) {
+                long grant = Math.min(slice, maxRequests);
+                try {
+                    jdbcTemplate.update(
+                            "INSERT INTO rate_limit_leases (link_id, window_start, granted, expires_at) VALUES (?, ?, ?, ?)",
+                            id, lease.windowStart, grant, lease.expiresAt);
+                    return grant;
+                } catch (DuplicateKeyException e) {
+                    // Another replica opened the window first, lock its row
+                    granted = jdbcTemplate.queryForList(
+                            "SELECT granted FROM rate_limit_leases WHERE link_id = ? AND window_start = ? FOR UPDATE",
+                            Long.class, id, lease.windowStart);
+                }
+            }
+
+            long grant = Math.min(slice, maxRequests - granted.get(0));
+            if (grant <= 0) {
+                return 0L;
+            }
+            jdbcTemplate.update(
+                    "UPDATE rate_limit_leases SET granted = granted + ? WHERE link_id = ? AND window_start = ?",
+                    grant, id, lease.windowStart);
+            return grant;
+        });
+    }
+
+    private static final class Lease {
+
+        private final long windowStart;
+        private final long expiresAt;
+        private final AtomicLong remaining = new AtomicLong();
+        private volatile boolean exhausted;
+        /** Until then redirects are let through without asking the database, after it failed */
+        private volatile long retryAt;
+
+        Lease(long windowStart, long expiresAt) {
+            this.windowStart = windowStart;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean tryAcquire() {
+            long current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+    }
+}
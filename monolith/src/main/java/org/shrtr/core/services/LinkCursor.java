@@ -0,0 +1,47 @@
+package org.shrtr.core.services;
+
+import lombok.Value;
+import org.shrtr.core.domain.entities.Link;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of a link in the (created_on, id) order of its owner's links, handed to clients as an opaque token.
+ */
+@Value
+public class LinkCursor {
+
+    LocalDateTime createdOn;
+    UUID id;
+
+    public static LinkCursor after(Link link) {
+        return new LinkCursor(link.getCreatedOn(), link.getId());
+    }
+
+    public String encode() {
+        String position = createdOn + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static LinkCursor decode(String token) {
+        String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = position.indexOf('|');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor " + token);
+        }
+        try {
+            return new LinkCursor(
+                    LocalDateTime.parse(position.substring(0, separator)),
+                    UUID.fromString(position.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor " + token, e);
+        }
+    }
+}
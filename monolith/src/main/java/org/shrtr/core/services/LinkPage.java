@@ -0,0 +1,14 @@
+package org.shrtr.core.services;
+
+import lombok.Value;
+import org.shrtr.core.domain.entities.Link;
+
+import java.util.List;
+
+@Value
+public class LinkPage {
+
+    List<Link> links;
+    /** Where the next page starts, null on the last page */
+    LinkCursor next;
+}
@@ -3,20 +3,38 @@ package org.shrtr.core.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.shrtr.core.controllers.TooManyRequestsException;
+import org.shrtr.core.domain.entities.ClickResolution;
 import org.shrtr.core.domain.entities.Link;
 import org.shrtr.core.domain.entities.User;
 import org.shrtr.core.domain.repositories.LinksRepository;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.shrtr.core.events.EventRouting;
 import org.shrtr.core.events.EventService;
 import org.shrtr.core.events.LinkRedirectedEvent;
+import org.shrtr.core.metrics.RedirectMetrics;
+import org.shrtr.core.metrics.RedirectMetrics.Stage;
+import org.shrtr.core.services.shortcodes.ShortCodeGenerator;
+import org.shrtr.core.services.hotlinks.HotLinkTracker;
+import org.shrtr.core.services.stats.ClickRollups;
+import org.shrtr.core.services.stats.LinkStats;
+import org.shrtr.core.services.shortcodes.ShortCodeFilter;
+import org.shrtr.core.services.shortcodes.ShortKeyBackfill;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.repository.query.Jpa21Utils;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
-import java.security.SecureRandom;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.TemporalField;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -24,7 +42,35 @@ import java.util.*;
 public class LinkService {
   private final LinksRepository linksRepository;
   private final EventService eventService;
+  private final EventRouting eventRouting;
   private final RateLimiting rateLimiting;
+  private final RedirectCache redirectCache;
+  private final ShortCodeGenerator shortCodeGenerator;
+  private final ShortKeyBackfill shortKeyBackfill;
+  private final ShortCodeFilter shortCodeFilter;
+  private final HotLinkTracker hotLinkTracker;
+  private final ClickRollups clickRollups;
+  private final RedirectMetrics redirectMetrics;
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+
+  @Value("${shrtr.links.batch.chunk-size:1000}")
+  private int batchChunkSize;
+
+  @Value("${shrtr.links.export.fetch-size:1000}")
+  private int exportFetchSize;
+
+  private TransactionTemplate chunkTransaction;
+  private JdbcTemplate exportJdbcTemplate;
+
+  @PostConstruct
+  private void init() {
+    chunkTransaction = new TransactionTemplate(transactionManager);
+
+    // A positive fetch size makes the MariaDB driver stream the result set instead of buffering it
+    exportJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    exportJdbcTemplate.setFetchSize(exportFetchSize);
+  }
 
   @Transactional
   public Link create(String targetUrl, User user) {
@@ -35,38 +81,142 @@ public class LinkService {
     link.setOwner(user);
     link.setCounter(0);
     link.setRedirectCounter(0);
-    link.setShortened(randomStringAlphaNumeric(8));
+    setShortCode(link);
     linksRepository.save(link);
     return link;
   }
 
+  /**
+   * Creates a link for every original, committing them in chunks with batched inserts. Only one chunk is held
+   * in memory at a time, and each one is handed to {@code onChunkCreated} once it has committed, so links
+   * created before a failure are kept and reported.
+   *
+   * Rows are inserted with JDBC, bypassing the entity listeners: instead of a link.created event per link,
+   * a single link.batch-created event is published per chunk.
+   */
+  public void createBatch(Iterator<String> originals, User user, Consumer<List<Link>> onChunkCreated) {
+    List<Link> chunk = new ArrayList<>(batchChunkSize);
+    while (originals.hasNext()) {
+      chunk.add(newLink(originals.next(), user));
+      if (chunk.size() == batchChunkSize || !originals.hasNext()) {
+        insertChunk(chunk);
+        onChunkCreated.accept(chunk);
+        chunk = new ArrayList<>(batchChunkSize);
+      }
+    }
+  }
+
+  private Link newLink(String targetUrl, User user) {
+    LocalDateTime now = LocalDateTime.now();
+    Link link = new Link();
+    link.setId(UUID.randomUUID());
+    link.setCreatedOn(now);
+    link.setUpdatedOn(now);
+    link.setOriginal(targetUrl);
+    link.setOwner(user);
+    link.setCounter(0);
+    link.setRedirectCounter(0);
+    setShortCode(link);
+    return link;
+  }
+
+  private void setShortCode(Link link) {
+    long key = shortCodeGenerator.nextKey();
+    link.setShortKey(key);
+    link.setShortened(ShortCodeGenerator.toCode(key));
+    shortCodeFilter.add(key);
+  }
+
+  private void insertChunk(List<Link> chunk) {
+    chunkTransaction.executeWithoutResult(status -> {
+      jdbcTemplate.batchUpdate(
+              "INSERT INTO links (id, created_on, updated_on, original, shortened, short_key, counter, redirect_counter, owner_id) " +
+                      "VALUES (?, ?, ?, ?, ?, ?, 0, 0, ?)",
+              chunk,
+              chunk.size(),
+              (statement, link) -> {
+                statement.setBytes(1, UuidBytes.toBytes(link.getId()));
+                statement.setObject(2, link.getCreatedOn());
+                statement.setObject(3, link.getUpdatedOn());
+                statement.setString(4, link.getOriginal());
+                statement.setString(5, link.getShortened());
+                statement.setLong(6, link.getShortKey());
+                statement.setBytes(7, UuidBytes.toBytes(link.getOwner().getId()));
+              });
+      if (eventRouting.shouldPublish("link", "batch-created")) {
+        eventService.linksCreated(chunk);
+      }
+    });
+  }
+
   @Transactional
   public Optional<Link> findLinkByShortened(String shortened) {
-    return linksRepository.findByShortened(shortened);
+    long key = ShortCodeGenerator.toKey(shortened);
+    if (key < 0) {
+      return Optional.empty();
+    }
+    Optional<Link> link = linksRepository.findByShortKey(key);
+    if (link.isEmpty() && shortKeyBackfill.mayBeKeyless(shortened)) {
+      return linksRepository.findByShortened(shortened);
+    }
+    return link;
   }
 
-  @Transactional
-  public Optional<Link> findForRedirect(String shortened) {
-    var start = System.currentTimeMillis();
+  // Not transactional on purpose: cache hits must not check out a database connection
+  public Optional<RedirectTarget> findForRedirect(String shortened) {
+    var start = System.nanoTime();
 
-    Optional<Link> byShortened = linksRepository.findByShortened(shortened);
+    RedirectTarget target = redirectCache.get(shortened);
+    redirectMetrics.record(Stage.LOOKUP, start);
 
-    if (byShortened.isEmpty()) {
-      return byShortened;
+    if (target == null) {
+      return Optional.empty();
     }
 
-    Link link = byShortened.get();
-    User owner = link.getOwner();
+    // Counted before the rate limit, a link flooded with rejected redirects is hot as well
+    hotLinkTracker.record(target);
+    assertRateLimitIsNotExceeded(target);
+    clickRollups.recordClick(target.getLinkId());
+    var latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
 
-    assertRateLimitIsNotExceeded(link, owner);
-    var latency = System.currentTimeMillis() - start;
-    emitRedirectEvent(link, latency);
-    return byShortened;
+    var enqueueStart = System.nanoTime();
+    emitRedirectEvent(target, latency);
+    redirectMetrics.record(Stage.EVENT_ENQUEUE, enqueueStart);
+    return Optional.of(target);
   }
 
   @Transactional
-  public List<Link> getAllLinks(User user) {
-    return linksRepository.findByOwner(user);
+  public LinkPage getLinks(User user, LinkCursor after, int limit) {
+    // One extra row tells whether there is a next page
+    PageRequest page = PageRequest.ofSize(limit + 1);
+    List<Link> links = after == null
+            ? linksRepository.findPageByOwner(user, page)
+            : linksRepository.findPageByOwnerAfter(user, after.getCreatedOn(), after.getId(), page);
+
+    if (links.size() <= limit) {
+      return new LinkPage(links, null);
+    }
+    links = links.subList(0, limit);
+    return new LinkPage(links, LinkCursor.after(links.get(limit - 1)));
+  }
+
+  /**
+   * Passes every link of the user to {@code consumer}, in creation order, straight from a forward-only result
+   * set: memory use does not depend on how many links the user has. The links are not managed entities and
+   * only carry their id, original, shortened and creation time.
+   */
+  public void exportLinks(User user, Consumer<Link> consumer) {
+    exportJdbcTemplate.query(
+            "SELECT id, original, shortened, created_on FROM links WHERE owner_id = ? ORDER BY created_on, id",
+            resultSet -> {
+              Link link = new Link();
+              link.setId(UuidBytes.fromBytes(resultSet.getBytes("id")));
+              link.setOriginal(resultSet.getString("original"));
+              link.setShortened(resultSet.getString("shortened"));
+              link.setCreatedOn(resultSet.getObject("created_on", LocalDateTime.class));
+              consumer.accept(link);
+            },
+            (Object) UuidBytes.toBytes(user.getId()));
   }
 
   @Transactional
@@ -78,36 +228,45 @@ public class LinkService {
   public Optional<Link> deleteLink(User user, UUID id) {
     return linksRepository.findByOwnerAndId(user, id)
             .stream()
-            .peek(linksRepository::delete)
+            .peek(link -> {
+              linksRepository.delete(link);
+              clickRollups.deleteLink(link.getId());
+            })
             .findAny();
   }
 
-  private void assertRateLimitIsNotExceeded(Link link, User user) {
-    if (!rateLimiting.isEnabled(user))
+  /**
+   * @param resolution null to pick one that suits the range
+   */
+  @Transactional
+  public Optional<LinkStats> getLinkStats(User user, UUID id, ClickResolution resolution, LocalDateTime from, LocalDateTime to) {
+    return linksRepository.findByOwnerAndId(user, id)
+            .map(link -> clickRollups.getStats(
+                    link.getId(),
+                    resolution == null ? clickRollups.defaultResolution(from, to) : resolution,
+                    from,
+                    to));
+  }
+
+  private void assertRateLimitIsNotExceeded(RedirectTarget target) {
+    if (!rateLimiting.isEnabled(target))
       return;
 
-    if (rateLimiting.limitExceeded(link, user))
+    var start = System.nanoTime();
+    boolean exceeded = rateLimiting.limitExceeded(target);
+    redirectMetrics.record(Stage.RATE_LIMIT, start);
+
+    if (exceeded)
       throw new TooManyRequestsException();
   }
 
-  private void emitRedirectEvent(Link link, Long latency) {
+  private void emitRedirectEvent(RedirectTarget target, Long latency) {
+    if (!eventRouting.shouldPublish("link", "redirected")) {
+      return;
+    }
     LocalDateTime timestamp = LocalDateTime.now();
-    var event = new LinkRedirectedEvent(timestamp, link.getId(), link.getOriginal(), link.getShortened(), link.getOwner().getUsername(), latency);
+    var event = new LinkRedirectedEvent(timestamp, target.getLinkId(), target.getOriginal(), target.getShortened(), target.getOwnerUsername(), latency);
     eventService.linkRedirected(event);
   }
 
-  private static String randomStringAlphaNumeric(int size) {
-    return randomString(AB, size);
-  }
-  private static String randomString(String candidates, int size) {
-    SecureRandom secureRandom = new SecureRandom();
-    StringBuilder sb = new StringBuilder(size);
-    for( int i = 0; i < size; i++ )
-      sb.append( candidates.charAt( secureRandom.nextInt(candidates.length()) ) );
-    return sb.toString();
-  }
-
-  private static final String AB = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
-
-
 }
@@ -1,50 +1,33 @@
 package org.shrtr.core.services;
 
 import lombok.RequiredArgsConstructor;
-import org.shrtr.core.domain.repositories.LinksRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.shrtr.core.domain.entities.*;
-
-import java.time.Duration;
-import java.time.LocalDateTime;
 
 @Service
+@ConditionalOnProperty(name = "shrtr.rate-limiting.strategy", havingValue = "mariadb")
 @RequiredArgsConstructor
 public class MariaDBRateLimiting implements RateLimiting {
 
-    private final LinksRepository linksRepository;
+    private final RedirectCounterAggregator redirectCounters;
 
     // Not quite a reliable system as we are disregarding all previous requests once
-    // a time window has elapsed.
+    // a time window has elapsed. The row only has room for a fixed window, so owners'
+    // strategies are only honoured by InMemoryRateLimiting.
 
     @Override
-    public boolean isEnabled(User user) {
-        return user.hasRedirectRateLimit();
+    public boolean isEnabled(RedirectTarget target) {
+        return target.hasRedirectRateLimit();
     }
 
     @Override
-    public boolean limitExceeded(Link link, User user) {
-        boolean exceeded = false;
-        LocalDateTime now = LocalDateTime.now();
-        if (link.getRateLimitWindowStart() == null){
-            // first redirect ever
-            link.setRateLimitWindowStart(now);
-            link.setRedirectCounter(1);
-        }
-        else if (Duration.between(link.getRateLimitWindowStart(), now).toMillis() > user.getMaxRequestsWindowMs()) {
-            // expired window
-            link.setRateLimitWindowStart(now);
-            link.setRedirectCounter(1);
-        }
-        else {
-            // current window
-            if (link.getRedirectCounter() >= user.getMaxRequests()){
-                exceeded = true;
-            }
-            link.setRedirectCounter(link.getRedirectCounter() + 1);
-        }
+    public boolean limitExceeded(RedirectTarget target) {
+        return redirectCounters.countRedirect(target.getLinkId(), target.getMaxRequests(), target.getMaxRequestsWindowMs());
+    }
 
-        linksRepository.save(link);
-        return exceeded;
+    @Override
+    public boolean isBlocking() {
+        // Opening a window and loading a link's counters go to the database
+        return true;
     }
 }
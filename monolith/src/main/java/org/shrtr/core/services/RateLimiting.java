@@ -1,9 +1,13 @@
 package org.shrtr.core.services;
 
-import org.shrtr.core.domain.entities.*;
-
 public interface RateLimiting {
-    boolean isEnabled(User user);
-    boolean limitExceeded(Link link, User user);
+    boolean isEnabled(RedirectTarget target);
+    boolean limitExceeded(RedirectTarget target);
 
+    /**
+     * Whether deciding may wait on I/O, in which case non-blocking callers must not decide on an event loop.
+     */
+    default boolean isBlocking() {
+        return false;
+    }
 }
@@ -0,0 +1,141 @@
+package org.shrtr.core.services;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.repositories.LinksRepository;
+import org.shrtr.core.metrics.RedirectMetrics;
+import org.shrtr.core.metrics.RedirectMetrics.Stage;
+import org.shrtr.core.services.hotlinks.HotLink;
+import org.shrtr.core.services.hotlinks.HotLinkListener;
+import org.shrtr.core.services.shortcodes.ShortCodeFilter;
+import org.shrtr.core.services.shortcodes.ShortCodeGenerator;
+import org.shrtr.core.services.shortcodes.ShortKeyBackfill;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the redirect hot path off the database.
+ *
+ * Entries are invalidated by {@link org.shrtr.core.events.DbInterceptorConfiguration} once a change to a link,
+ * or to what they carry of its owner, commits on this node. Changes made by other replicas are only picked up
+ * once the entry expires, so the TTL bounds how stale a redirect can be.
+ *
+ * The hottest links, as told by {@link org.shrtr.core.services.hotlinks.HotLinkTracker}, are pinned: they
+ * weigh nothing so they are never evicted for size, but they still expire.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedirectCache implements HotLinkListener {
+
+    private final LinksRepository linksRepository;
+    private final MeterRegistry meterRegistry;
+    private final RedirectMetrics redirectMetrics;
+    private final ShortKeyBackfill shortKeyBackfill;
+    private final ShortCodeFilter shortCodeFilter;
+
+    @Value("${shrtr.redirect-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${shrtr.redirect-cache.expire-after-write:5m}")
+    private Duration expireAfterWrite;
+
+    private LoadingCache<String, RedirectTarget> cache;
+    private final Set<String> pinned = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    private void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher((String shortened, RedirectTarget target) -> pinned.contains(shortened) ? 0 : 1)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(this::load);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "redirects");
+    }
+
+    /**
+     * @return the redirect for the given code or null when no link has been shortened to it.
+     * Unknown codes are not cached so a link created right after a miss is found straight away.
+     */
+    public RedirectTarget get(String shortened) {
+        return cache.get(shortened);
+    }
+
+    /**
+     * @return the cached redirect, or null without loading it from the database
+     */
+    public RedirectTarget getIfPresent(String shortened) {
+        return cache.getIfPresent(shortened);
+    }
+
+    /**
+     * Caches a redirect loaded by other means than this cache, e.g. a non-blocking driver.
+     */
+    public void put(String shortened, RedirectTarget target) {
+        cache.put(shortened, target);
+    }
+
+    public void invalidate(String shortened) {
+        if (shortened != null) {
+            cache.invalidate(shortened);
+        }
+    }
+
+    public void invalidateOwner(UUID ownerId) {
+        cache.asMap().values().removeIf(target -> target.getOwnerId().equals(ownerId));
+    }
+
+    @Override
+    public void hotLinksChanged(List<HotLink> hotLinks) {
+        Set<String> hot = hotLinks.stream().map(HotLink::getShortened).collect(Collectors.toSet());
+        Set<String> changed = new HashSet<>(pinned);
+        changed.addAll(hot);
+        changed.removeIf(shortened -> pinned.contains(shortened) == hot.contains(shortened));
+
+        pinned.addAll(hot);
+        pinned.retainAll(hot);
+        for (String shortened : changed) {
+            // Weights are only computed when an entry is written
+            if (cache.asMap().computeIfPresent(shortened, (code, target) -> target) == null && hot.contains(shortened)) {
+                cache.get(shortened);
+            }
+        }
+    }
+
+    private RedirectTarget load(String shortened) {
+        long key = ShortCodeGenerator.toKey(shortened);
+        if (key < 0 || !shortCodeFilter.mightExist(key)) {
+            // Not a code we could have handed out or not one we did, no need to ask the database
+            return null;
+        }
+
+        // The owner is fetched in the same query, so this also covers loading it
+        long start = System.nanoTime();
+        try {
+            Optional<Link> link = linksRepository.findWithOwnerByShortKey(key);
+            if (link.isEmpty() && shortKeyBackfill.mayBeKeyless(shortened)) {
+                link = linksRepository.findWithOwnerByShortened(shortened);
+            }
+            return link.map(RedirectTarget::fromLink).orElse(null);
+        } finally {
+            redirectMetrics.record(Stage.DB_LOOKUP, start);
+        }
+    }
+}
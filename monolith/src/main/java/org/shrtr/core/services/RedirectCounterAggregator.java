@@ -0,0 +1,210 @@
+package org.shrtr.core.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind mirror of the rate limit window stored on each {@code links} row.
+ *
+ * Redirects are counted in memory and the deltas are flushed periodically with a single batched
+ * {@code UPDATE links SET redirect_counter = redirect_counter + ?}, so popular links no longer serialize on
+ * their row lock. The row is only written synchronously when a window has to be opened, once per window.
+ * Every flush also reads back the counters of the tracked links so the increments of other replicas are
+ * taken into account, which means a link can go over its limit by what the other replicas count between
+ * two flushes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedirectCounterAggregator {
+
+    private static final int QUERY_CHUNK_SIZE = 500;
+    private static final long IDLE_TIMEOUT_MS = 10 * 60 * 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${shrtr.rate-limiting.mariadb.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    private final Map<UUID, SharedWindow> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Counts one redirect against the link's shared window, opening a new one on the row when it has elapsed.
+     *
+     * @return whether the redirect goes over the limit
+     */
+    public boolean countRedirect(UUID linkId, long maxRequests, long windowMs) {
+        SharedWindow window = windows.get(linkId);
+        if (window == null) {
+            window = load(linkId);
+            if (window == null) {
+                return false;
+            }
+            SharedWindow existing = windows.putIfAbsent(linkId, window);
+            if (existing != null) {
+                window = existing;
+            }
+        }
+
+        synchronized (window) {
+            long now = System.currentTimeMillis();
+            if (window.isElapsed(now, windowMs)) {
+                openWindow(linkId, window, now, windowMs);
+            }
+
+            boolean exceeded = window.persisted + window.pending >= maxRequests;
+            window.pending++;
+            return exceeded;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shrtr.rate-limiting.mariadb.flush-interval-ms:1000}")
+    void flush() {
+        List<Object[]> deltas = new ArrayList<>();
+        for (Map.Entry<UUID, SharedWindow> entry : windows.entrySet()) {
+            SharedWindow window = entry.getValue();
+            synchronized (window) {
+                if (window.pending > 0) {
+                    deltas.add(new Object[]{window.pending, UuidBytes.toBytes(entry.getKey()), window.start});
+                    window.persisted += window.pending;
+                    window.pending = 0;
+                }
+            }
+        }
+
+        if (!deltas.isEmpty()) {
+            // Deltas only apply to the window they were counted in, another replica may have opened a new one
+            jdbcTemplate.batchUpdate(
+                    "UPDATE links SET redirect_counter = redirect_counter + ? WHERE id = ? AND rate_limit_window_start = ?",
+                    deltas,
+                    flushBatchSize,
+                    (statement, delta) -> {
+                        statement.setLong(1, (long) delta[0]);
+                        statement.setBytes(2, (byte[]) delta[1]);
+                        statement.setObject(3, delta[2]);
+                    });
+            log.debug("Flushed redirect counters of {} links", deltas.size());
+        }
+
+        refresh();
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        List<UUID> tracked = new ArrayList<>(windows.keySet());
+        for (int from = 0; from < tracked.size(); from += QUERY_CHUNK_SIZE) {
+            List<UUID> chunk = tracked.subList(from, Math.min(tracked.size(), from + QUERY_CHUNK_SIZE));
+            Set<UUID> missing = new HashSet<>(chunk);
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query(
+                    "SELECT id, redirect_counter, rate_limit_window_start FROM links WHERE id IN (" + placeholders + ")",
+                    resultSet -> {
+                        UUID id = UuidBytes.fromBytes(resultSet.getBytes("id"));
+                        missing.remove(id);
+                        SharedWindow window = windows.get(id);
+                        if (window != null) {
+                            window.refresh(resultSet.getLong("redirect_counter"), windowStart(resultSet));
+                        }
+                    },
+                    chunk.stream().map(UuidBytes::toBytes).toArray());
+            missing.forEach(windows::remove);
+        }
+
+        // Forget links that have not been clicked for a while, they are loaded again on their next redirect
+        windows.values().removeIf(window -> window.isIdle(now));
+    }
+
+    private SharedWindow load(UUID linkId) {
+        List<SharedWindow> rows = jdbcTemplate.query(
+                "SELECT redirect_counter, rate_limit_window_start FROM links WHERE id = ?",
+                (resultSet, rowNum) -> {
+                    SharedWindow window = new SharedWindow();
+                    window.refresh(resultSet.getLong("redirect_counter"), windowStart(resultSet));
+                    return window;
+                },
+                (Object) UuidBytes.toBytes(linkId));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private void openWindow(UUID linkId, SharedWindow window, long now, long windowMs) {
+        LocalDateTime start = toLocalDateTime(now);
+        int updated = jdbcTemplate.update(
+                "UPDATE links SET rate_limit_window_start = ?, redirect_counter = 0 " +
+                        "WHERE id = ? AND (rate_limit_window_start IS NULL OR rate_limit_window_start < ?)",
+                start, UuidBytes.toBytes(linkId), toLocalDateTime(now - windowMs));
+
+        if (updated > 0) {
+            window.start = start;
+            window.startMillis = now;
+            window.persisted = 0;
+            window.pending = 0;
+            window.lastUsed = now;
+            return;
+        }
+
+        // Another replica opened the window first
+        SharedWindow current = load(linkId);
+        if (current != null) {
+            window.refresh(current.persisted, current.start);
+            window.pending = 0;
+        }
+    }
+
+    private static LocalDateTime windowStart(ResultSet resultSet) throws SQLException {
+        return resultSet.getObject("rate_limit_window_start", LocalDateTime.class);
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static final class SharedWindow {
+
+        private LocalDateTime start;
+        private long startMillis;
+        private long persisted;
+        private long pending;
+        private long lastUsed = System.currentTimeMillis();
+
+        boolean isElapsed(long now, long windowMs) {
+            lastUsed = now;
+            return start == null || now - startMillis > windowMs;
+        }
+
+        synchronized void refresh(long counter, LocalDateTime windowStart) {
+            if (windowStart == null) {
+                return;
+            }
+            if (!windowStart.equals(start)) {
+                // pending redirects belong to a window that is gone
+                pending = 0;
+            }
+            start = windowStart;
+            startMillis = windowStart.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            persisted = counter;
+        }
+
+        synchronized boolean isIdle(long now) {
+            return pending == 0 && now - lastUsed > IDLE_TIMEOUT_MS;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.shrtr.core.services;
+
+import lombok.Builder;
+import lombok.Value;
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.shrtr.core.domain.entities.User;
+
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of everything the redirect path needs from a {@link Link} and its owner.
+ *
+ * Unlike the entity it is safe to share between threads and to keep around after the
+ * persistence context that loaded it has been closed.
+ */
+@Value
+@Builder
+public class RedirectTarget {
+
+    UUID linkId;
+    String shortened;
+    String original;
+    UUID ownerId;
+    String ownerUsername;
+    long maxRequests;
+    long maxRequestsWindowMs;
+    RateLimitStrategy rateLimitStrategy;
+
+    public boolean hasRedirectRateLimit() {
+        return maxRequests > 0 && maxRequestsWindowMs > 0;
+    }
+
+    public static RedirectTarget fromLink(Link link) {
+        User owner = link.getOwner();
+        return RedirectTarget.builder()
+                .linkId(link.getId())
+                .shortened(link.getShortened())
+                .original(link.getOriginal())
+                .ownerId(owner.getId())
+                .ownerUsername(owner.getUsername())
+                .maxRequests(owner.getMaxRequests())
+                .maxRequestsWindowMs(owner.getMaxRequestsWindowMs())
+                .rateLimitStrategy(owner.getRateLimitStrategy())
+                .build();
+    }
+}
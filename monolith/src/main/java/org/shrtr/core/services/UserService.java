@@ -1,10 +1,12 @@
 package org.shrtr.core.services;
 
 import lombok.RequiredArgsConstructor;
+import org.shrtr.core.config.security.JwtPrincipalCache;
 import org.shrtr.core.controllers.AuthenticationController;
 import org.shrtr.core.controllers.SettingsController;
 import org.shrtr.core.domain.entities.User;
 import org.shrtr.core.domain.repositories.UsersRepository;
+import org.shrtr.core.events.EventRouting;
 import org.shrtr.core.events.EventService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -18,6 +20,8 @@ public class UserService {
   private final UsersRepository usersRepository;
   private final PasswordEncoder passwordEncoder;
   private final EventService eventService;
+  private final EventRouting eventRouting;
+  private final JwtPrincipalCache principalCache;
 
   @Transactional
   public User create(AuthenticationController.CreateUserRequest request) {
@@ -35,17 +39,29 @@ public class UserService {
     user.setLastName(request.getLastName());
 
     usersRepository.save(user);
-    eventService.userCreated(user);
+    if (eventRouting.shouldPublish("user", "registered")) {
+      eventService.userCreated(user);
+    }
     return user;
   }
 
+  /**
+   * @param principal the authenticated user, shared with the other requests of the same token, left as it is
+   * @return the user as updated
+   */
   @Transactional
-  public User updateUserRateLimitSettings(User user, SettingsController.RateLimitSettingsDto settings){
+  public User updateUserRateLimitSettings(User principal, SettingsController.RateLimitSettingsDto settings){
 
+    User user = usersRepository.findById(principal.getId())
+        .orElseThrow(() -> new ValidationException("User no longer exists"));
     user.setMaxRequests(settings.getMaxRequests());
     user.setMaxRequestsWindowMs(settings.getMaxRequestsWindowMs());
+    if (settings.getStrategy() != null) {
+      user.setRateLimitStrategy(settings.getStrategy());
+    }
 
     usersRepository.save(user);
+    principalCache.invalidateUser(user.getId());
     return user;
   }
 }
@@ -0,0 +1,59 @@
+package org.shrtr.core.services.hotlinks;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate counts of {@code long} keys in a fixed amount of memory, safe to update from any number of threads.
+ *
+ * Estimates never undercount; they overcount by at most {@code e / width} of the total with probability
+ * {@code 1 - e^-depth}.
+ */
+final class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    CountMinSketch(int width, int depth) {
+        int roundedWidth = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = roundedWidth - 1;
+        this.counters = new AtomicLongArray(roundedWidth * depth);
+    }
+
+    /**
+     * Counts one occurrence of the key.
+     *
+     * @return the key's estimated count, this occurrence included
+     */
+    long add(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, h1, h2)));
+        }
+        return estimate;
+    }
+
+    long estimate(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, h1, h2)));
+        }
+        return estimate;
+    }
+
+    private int index(int row, long h1, long h2) {
+        return row * (mask + 1) + (int) ((h1 + row * h2) & mask);
+    }
+
+    private static long mix(long z) {
+        // splitmix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,17 @@
+package org.shrtr.core.services.hotlinks;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+@Value
+public class HotLink {
+
+    UUID linkId;
+    String shortened;
+    String ownerUsername;
+    /** Redirects counted during the last window, an upper bound */
+    long redirects;
+    double redirectsPerSecond;
+
+}
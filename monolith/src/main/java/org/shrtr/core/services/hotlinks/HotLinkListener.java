@@ -0,0 +1,14 @@
+package org.shrtr.core.services.hotlinks;
+
+import java.util.List;
+
+/**
+ * Told about the hottest links at the end of every {@link HotLinkTracker} window, e.g. to keep them in memory.
+ */
+public interface HotLinkListener {
+
+    /**
+     * @param hotLinks the hottest links of the window that just ended, hottest first
+     */
+    void hotLinksChanged(List<HotLink> hotLinks);
+}
@@ -0,0 +1,155 @@
+package org.shrtr.core.services.hotlinks;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.services.RedirectTarget;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the most redirected links in fixed windows, in memory that does not depend on how many links are clicked.
+ *
+ * Every redirect is counted in a Count-Min Sketch; links whose estimate beats the coldest of the current top
+ * {@code top-k} take its place. Most redirects only cost the sketch update and a volatile read: the top is
+ * only locked when a link is about to enter it. At the end of each window the top is published, passed to the
+ * {@link HotLinkListener}s and counting starts over.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HotLinkTracker {
+
+    private final List<HotLinkListener> listeners;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shrtr.hot-links.top-k:100}")
+    private int topK;
+
+    @Value("${shrtr.hot-links.sketch-width:16384}")
+    private int sketchWidth;
+
+    @Value("${shrtr.hot-links.sketch-depth:4}")
+    private int sketchDepth;
+
+    private volatile Window window;
+    private volatile List<HotLink> hotLinks = List.of();
+
+    @PostConstruct
+    private void init() {
+        window = new Window();
+        Gauge.builder("hot-links.top.redirects-per-second", this,
+                        tracker -> tracker.hotLinks.isEmpty() ? 0 : tracker.hotLinks.get(0).getRedirectsPerSecond())
+                .description("Rate of the hottest link during the last window")
+                .register(meterRegistry);
+    }
+
+    public void record(RedirectTarget target) {
+        Window current = window;
+        UUID linkId = target.getLinkId();
+        long estimate = current.sketch.add(key(linkId));
+        if (estimate <= current.threshold) {
+            return;
+        }
+        Candidate candidate = current.candidates.get(linkId);
+        if (candidate != null) {
+            candidate.estimate = estimate;
+            return;
+        }
+        current.admit(linkId, target, estimate);
+    }
+
+    /**
+     * @return the hottest links of the last complete window, hottest first
+     */
+    public List<HotLink> getHotLinks() {
+        return hotLinks;
+    }
+
+    @Scheduled(fixedRateString = "${shrtr.hot-links.window-ms:10000}")
+    void nextWindow() {
+        Window ended = window;
+        window = new Window();
+
+        double seconds = Math.max(1, System.nanoTime() - ended.startNanos) / 1e9;
+        hotLinks = ended.candidates.entrySet().stream()
+                .map(entry -> {
+                    RedirectTarget target = entry.getValue().target;
+                    long redirects = ended.sketch.estimate(key(entry.getKey()));
+                    return new HotLink(entry.getKey(), target.getShortened(), target.getOwnerUsername(),
+                            redirects, redirects / seconds);
+                })
+                .sorted(Comparator.comparingLong(HotLink::getRedirects).reversed())
+                .collect(Collectors.toUnmodifiableList());
+
+        for (HotLinkListener listener : listeners) {
+            try {
+                listener.hotLinksChanged(hotLinks);
+            } catch (Exception e) {
+                log.error("Hot link listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private static long key(UUID linkId) {
+        return linkId.getMostSignificantBits() ^ linkId.getLeastSignificantBits();
+    }
+
+    private final class Window {
+
+        private final long startNanos = System.nanoTime();
+        private final CountMinSketch sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        private final Map<UUID, Candidate> candidates = new ConcurrentHashMap<>();
+        /** Estimate a link needs to beat to enter the top, stays 0 until it is full */
+        private volatile long threshold;
+
+        synchronized void admit(UUID linkId, RedirectTarget target, long estimate) {
+            if (candidates.containsKey(linkId)) {
+                return;
+            }
+            if (candidates.size() < topK) {
+                candidates.put(linkId, new Candidate(target, estimate));
+                if (candidates.size() == topK) {
+                    threshold = coldest().getValue().estimate;
+                }
+                return;
+            }
+
+            // Estimates are updated outside of the lock, the threshold may be behind
+            Map.Entry<UUID, Candidate> coldest = coldest();
+            if (estimate > coldest.getValue().estimate) {
+                candidates.remove(coldest.getKey());
+                candidates.put(linkId, new Candidate(target, estimate));
+                coldest = coldest();
+            }
+            threshold = coldest.getValue().estimate;
+        }
+
+        private Map.Entry<UUID, Candidate> coldest() {
+            return candidates.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().estimate))
+                    .orElseThrow();
+        }
+    }
+
+    private static final class Candidate {
+
+        private final RedirectTarget target;
+        private volatile long estimate;
+
+        Candidate(RedirectTarget target, long estimate) {
+            this.target = target;
+            this.estimate = estimate;
+        }
+    }
+}
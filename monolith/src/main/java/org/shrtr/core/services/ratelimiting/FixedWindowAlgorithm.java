@@ -0,0 +1,39 @@
+package org.shrtr.core.services.ratelimiting;
+
+/**
+ * Counts requests in consecutive windows starting at the first request of each one.
+ *
+ * Cheapest of all, but everything before the current window is disregarded so up to twice the limit can get
+ * through around a window edge.
+ *
+ * State: window end, requests in the window.
+ */
+public final class FixedWindowAlgorithm implements RateLimitAlgorithm {
+
+    public static final FixedWindowAlgorithm INSTANCE = new FixedWindowAlgorithm();
+
+    private FixedWindowAlgorithm() {
+    }
+
+    @Override
+    public boolean limitExceeded(long[] state, int offset, boolean fresh, long maxRequests, long periodNanos, long now) {
+        if (fresh || now - state[offset] > 0) {
+            // first request or expired window
+            state[offset] = now + periodNanos;
+            state[offset + 1] = 1;
+            return false;
+        }
+
+        // current window
+        if (state[offset + 1] >= maxRequests) {
+            return true;
+        }
+        state[offset + 1]++;
+        return false;
+    }
+
+    @Override
+    public long expiresAt(long[] state, int offset, long maxRequests, long periodNanos) {
+        return state[offset];
+    }
+}
@@ -0,0 +1,33 @@
+package org.shrtr.core.services.ratelimiting;
+
+/**
+ * Generic cell rate algorithm: requests are spaced one emission interval ({@code period / maxRequests}) apart
+ * and may arrive early by up to one period minus one interval, which admits a burst of {@code maxRequests}.
+ *
+ * State: theoretical arrival time of the next request.
+ */
+public final class GcraAlgorithm implements RateLimitAlgorithm {
+
+    public static final GcraAlgorithm INSTANCE = new GcraAlgorithm();
+
+    private GcraAlgorithm() {
+    }
+
+    @Override
+    public boolean limitExceeded(long[] state, int offset, boolean fresh, long maxRequests, long periodNanos, long now) {
+        long emissionInterval = Math.max(1, periodNanos / maxRequests);
+        long theoreticalArrival = fresh || now - state[offset] > 0 ? now : state[offset];
+        long next = theoreticalArrival + emissionInterval;
+
+        if (next - now > periodNanos) {
+            return true;
+        }
+        state[offset] = next;
+        return false;
+    }
+
+    @Override
+    public long expiresAt(long[] state, int offset, long maxRequests, long periodNanos) {
+        return state[offset];
+    }
+}
@@ -0,0 +1,174 @@
+package org.shrtr.core.services.ratelimiting;
+
+/**
+ * Rate limiting state keyed by the two longs of a link's UUID.
+ *
+ * The table is split in lock stripes, each one an open-addressing hash table over primitive arrays,
+ * so a decision never allocates and threads only contend when their links share a stripe. Every link gets
+ * {@link RateLimitAlgorithm#STATE_SIZE} longs that the algorithm chosen by its owner reads and updates.
+ * Timestamps come from {@link System#nanoTime()} and are only ever compared with each other.
+ */
+public class LinkCounterStore {
+
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public LinkCounterStore(int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes must be a power of two: " + stripes);
+        }
+        this.stripes = new Stripe[stripes];
+        this.stripeMask = stripes - 1;
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Accounts for one request to the link with the given algorithm. State left by a different algorithm,
+     * because the owner switched strategies, is discarded.
+     *
+     * @return whether the request goes over the limit
+     */
+    public boolean limitExceeded(long idHigh, long idLow, RateLimitAlgorithm algorithm,
+                                 long maxRequests, long periodNanos, long now) {
+        long hash = hash(idHigh, idLow);
+        return stripes[(int) (hash >>> 32) & stripeMask]
+                .limitExceeded(hash, idHigh, idLow, algorithm, maxRequests, periodNanos, now);
+    }
+
+    /**
+     * Drops the state of every link that has been idle for long enough to behave like a fresh one, so
+     * forgetting it does not change any decision.
+     *
+     * @return how many links were evicted
+     */
+    public int evictExpired(long now) {
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            evicted += stripe.evictExpired(now);
+        }
+        return evicted;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static long hash(long idHigh, long idLow) {
+        // murmur3 finalizer, UUIDs from the database are random but keep the hash robust anyway
+        long h = idHigh ^ Long.rotateLeft(idLow, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Stripe {
+
+        private static final int WIDTH = RateLimitAlgorithm.STATE_SIZE;
+
+        private long[] keys = new long[MIN_STRIPE_CAPACITY * 2];
+        private long[] states = new long[MIN_STRIPE_CAPACITY * WIDTH];
+        private long[] expirations = new long[MIN_STRIPE_CAPACITY];
+        private RateLimitAlgorithm[] algorithms = new RateLimitAlgorithm[MIN_STRIPE_CAPACITY];
+        private int size;
+
+        synchronized boolean limitExceeded(long hash, long idHigh, long idLow, RateLimitAlgorithm algorithm,
+                                           long maxRequests, long periodNanos, long now) {
+            int slot = find(hash, idHigh, idLow);
+
+            if (algorithms[slot] == null) {
+                // first redirect in a while
+                if (size + 1 > algorithms.length * 3 / 4) {
+                    resize(algorithms.length * 2);
+                    slot = find(hash, idHigh, idLow);
+                }
+                keys[slot * 2] = idHigh;
+                keys[slot * 2 + 1] = idLow;
+                size++;
+            }
+
+            boolean fresh = algorithms[slot] != algorithm;
+            algorithms[slot] = algorithm;
+
+            int offset = slot * WIDTH;
+            boolean exceeded = algorithm.limitExceeded(states, offset, fresh, maxRequests, periodNanos, now);
+            expirations[slot] = algorithm.expiresAt(states, offset, maxRequests, periodNanos);
+            return exceeded;
+        }
+
+        synchronized int evictExpired(long now) {
+            int live = 0;
+            for (int slot = 0; slot < algorithms.length; slot++) {
+                if (algorithms[slot] != null && now - expirations[slot] <= 0) {
+                    live++;
+                }
+            }
+
+            int evicted = size - live;
+            if (evicted > 0) {
+                // Rebuilding keeps probe sequences intact without tombstones and lets the stripe shrink back
+                int capacity = MIN_STRIPE_CAPACITY;
+                while (live > capacity * 3 / 4) {
+                    capacity *= 2;
+                }
+                rebuild(capacity, true, now);
+            }
+            return evicted;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private int find(long hash, long idHigh, long idLow) {
+            int mask = algorithms.length - 1;
+            int slot = (int) hash & mask;
+            while (algorithms[slot] != null && (keys[slot * 2] != idHigh || keys[slot * 2 + 1] != idLow)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize(int capacity) {
+            rebuild(capacity, false, 0);
+        }
+
+        private void rebuild(int capacity, boolean evictExpired, long now) {
+            long[] oldKeys = keys;
+            long[] oldStates = states;
+            long[] oldExpirations = expirations;
+            RateLimitAlgorithm[] oldAlgorithms = algorithms;
+
+            keys = new long[capacity * 2];
+            states = new long[capacity * WIDTH];
+            expirations = new long[capacity];
+            algorithms = new RateLimitAlgorithm[capacity];
+            size = 0;
+
+            for (int old = 0; old < oldAlgorithms.length; old++) {
+                if (oldAlgorithms[old] == null || (evictExpired && now - oldExpirations[old] > 0)) {
+                    continue;
+                }
+                long idHigh = oldKeys[old * 2];
+                long idLow = oldKeys[old * 2 + 1];
+                int slot = find(hash(idHigh, idLow), idHigh, idLow);
+                keys[slot * 2] = idHigh;
+                keys[slot * 2 + 1] = idLow;
+                System.arraycopy(oldStates, old * WIDTH, states, slot * WIDTH, WIDTH);
+                expirations[slot] = oldExpirations[old];
+                algorithms[slot] = oldAlgorithms[old];
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.shrtr.core.services.ratelimiting;
+
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+
+/**
+ * A rate limiting decision over a fixed amount of per-link state.
+ *
+ * Implementations are stateless: everything they remember about a link lives in {@link #STATE_SIZE} longs
+ * starting at {@code offset} in the array handed to them, which {@link LinkCounterStore} owns and guards.
+ * All timestamps are {@link System#nanoTime()} readings.
+ */
+public interface RateLimitAlgorithm {
+
+    int STATE_SIZE = 3;
+
+    /**
+     * Accounts for one request.
+     *
+     * @param fresh whether the state is empty and must be initialised
+     * @return whether the request goes over the limit
+     */
+    boolean limitExceeded(long[] state, int offset, boolean fresh, long maxRequests, long periodNanos, long now);
+
+    /**
+     * @return the instant from which the state behaves exactly like a fresh one and can be forgotten
+     */
+    long expiresAt(long[] state, int offset, long maxRequests, long periodNanos);
+
+    static RateLimitAlgorithm of(RateLimitStrategy strategy) {
+        return switch (strategy) {
+            case FIXED_WINDOW -> FixedWindowAlgorithm.INSTANCE;
+            case TOKEN_BUCKET -> TokenBucketAlgorithm.INSTANCE;
+            case SLIDING_WINDOW_COUNTER -> SlidingWindowCounterAlgorithm.INSTANCE;
+            case GCRA -> GcraAlgorithm.INSTANCE;
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package org.shrtr.core.services.ratelimiting;
+
+/**
+ * Approximates a sliding window by weighting the previous fixed window's count with how much of it still
+ * overlaps the sliding one. Bursts at window edges are smoothed out at the cost of one extra counter.
+ *
+ * State: current window start, requests in the current window, requests in the previous window.
+ */
+public final class SlidingWindowCounterAlgorithm implements RateLimitAlgorithm {
+
+    public static final SlidingWindowCounterAlgorithm INSTANCE = new SlidingWindowCounterAlgorithm();
+
+    private SlidingWindowCounterAlgorithm() {
+    }
+
+    @Override
+    public boolean limitExceeded(long[] state, int offset, boolean fresh, long maxRequests, long periodNanos, long now) {
+        if (fresh) {
+            state[offset] = now;
+            state[offset + 1] = 1;
+            state[offset + 2] = 0;
+            return false;
+        }
+
+        long elapsedWindows = (now - state[offset]) / periodNanos;
+        if (elapsedWindows == 1) {
+            state[offset] += periodNanos;
+            state[offset + 2] = state[offset + 1];
+            state[offset + 1] = 0;
+        } else if (elapsedWindows > 1) {
+            state[offset] += elapsedWindows * periodNanos;
+            state[offset + 2] = 0;
+            state[offset + 1] = 0;
+        }
+
+        double previousWeight = (double) (periodNanos - (now - state[offset])) / periodNanos;
+        double estimate = state[offset + 2] * previousWeight + state[offset + 1];
+        if (estimate >= maxRequests) {
+            return true;
+        }
+        state[offset + 1]++;
+        return false;
+    }
+
+    @Override
+    public long expiresAt(long[] state, int offset, long maxRequests, long periodNanos) {
+        // the current window still weighs in during the next one
+        return state[offset] + 2 * periodNanos;
+    }
+}
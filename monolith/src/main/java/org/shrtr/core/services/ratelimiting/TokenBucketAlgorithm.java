@@ -0,0 +1,42 @@
+package org.shrtr.core.services.ratelimiting;
+
+/**
+ * A bucket of {@code maxRequests} tokens refilled continuously at {@code maxRequests} per period.
+ *
+ * A full bucket allows a burst of {@code maxRequests}, after which requests are admitted at the refill rate.
+ *
+ * State: last refill, available tokens (as the raw bits of a double so fractional refills are not lost).
+ */
+public final class TokenBucketAlgorithm implements RateLimitAlgorithm {
+
+    public static final TokenBucketAlgorithm INSTANCE = new TokenBucketAlgorithm();
+
+    private TokenBucketAlgorithm() {
+    }
+
+    @Override
+    public boolean limitExceeded(long[] state, int offset, boolean fresh, long maxRequests, long periodNanos, long now) {
+        double tokens;
+        if (fresh) {
+            tokens = maxRequests;
+        } else {
+            double refill = (double) (now - state[offset]) * maxRequests / periodNanos;
+            tokens = Math.min(maxRequests, Double.longBitsToDouble(state[offset + 1]) + refill);
+        }
+
+        boolean exceeded = tokens < 1;
+        if (!exceeded) {
+            tokens -= 1;
+        }
+
+        state[offset] = now;
+        state[offset + 1] = Double.doubleToRawLongBits(tokens);
+        return exceeded;
+    }
+
+    @Override
+    public long expiresAt(long[] state, int offset, long maxRequests, long periodNanos) {
+        double missing = maxRequests - Double.longBitsToDouble(state[offset + 1]);
+        return state[offset] + (long) Math.ceil(missing * periodNanos / maxRequests);
+    }
+}
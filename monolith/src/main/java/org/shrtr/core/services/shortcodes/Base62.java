@@ -0,0 +1,68 @@
+package org.shrtr.core.services.shortcodes;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-width base62 encoding of non-negative numbers, most significant digit first.
+ */
+public final class Base62 {
+
+    public static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    // Digit value of every ASCII character, -1 for those outside the alphabet
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            DIGITS[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private Base62() {
+    }
+
+    /**
+     * @return how many distinct codes of the given width there are
+     */
+    public static long capacity(int width) {
+        long capacity = 1;
+        for (int i = 0; i < width; i++) {
+            capacity = Math.multiplyExact(capacity, ALPHABET.length());
+        }
+        return capacity;
+    }
+
+    public static String encode(long value, int width) {
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = ALPHABET.charAt((int) (value % ALPHABET.length()));
+            value /= ALPHABET.length();
+        }
+        if (value != 0) {
+            throw new IllegalArgumentException("Value does not fit in " + width + " base62 digits");
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Inverse of {@link #encode(long, int)}. Case matters, {@code aB} and {@code Ab} are different numbers.
+     *
+     * @return the number, or -1 if the code is not exactly {@code width} base62 digits
+     */
+    public static long decode(CharSequence code, int width) {
+        if (code == null || code.length() != width) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            char c = code.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * ALPHABET.length() + digit;
+        }
+        return value;
+    }
+}
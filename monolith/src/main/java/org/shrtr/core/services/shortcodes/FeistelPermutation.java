@@ -0,0 +1,84 @@
+package org.shrtr.core.services.shortcodes;
+
+/**
+ * Keyed bijection of {@code [0, domain)} onto itself, so consecutive sequence numbers come out as
+ * unrelated-looking codes while two different numbers can never map to the same one.
+ *
+ * A balanced Feistel network permutes 48-bit values, and cycle walking re-applies it until the result
+ * falls back into the domain, which keeps the mapping a bijection for any domain up to 2^48. Walks take
+ * 2^48 / domain steps on average, so the domain is meant to be close to 2^48 (8 base62 digits take 1.3).
+ */
+public final class FeistelPermutation {
+
+    private static final int HALF_BITS = 24;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+
+    private final long domain;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public FeistelPermutation(long domain, long key) {
+        if (domain <= 0 || domain > 1L << (2 * HALF_BITS)) {
+            throw new IllegalArgumentException("Domain must be in (0, 2^48]: " + domain);
+        }
+        this.domain = domain;
+
+        long state = key;
+        for (int round = 0; round < ROUNDS; round++) {
+            state += 0x9e3779b97f4a7c15L;
+            roundKeys[round] = mix(state);
+        }
+    }
+
+    public long permute(long value) {
+        if (value < 0 || value >= domain) {
+            throw new IllegalArgumentException("Value out of domain: " + value);
+        }
+        do {
+            value = encrypt(value);
+        } while (value >= domain);
+        return value;
+    }
+
+    /**
+     * @return the value that {@link #permute(long)} maps to {@code permuted}
+     */
+    public long invert(long permuted) {
+        if (permuted < 0 || permuted >= domain) {
+            throw new IllegalArgumentException("Value out of domain: " + permuted);
+        }
+        do {
+            permuted = decrypt(permuted);
+        } while (permuted >= domain);
+        return permuted;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ (mix(right ^ roundKeys[round]) & HALF_MASK);
+            left = right;
+            right = next;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private long decrypt(long value) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            long previous = right ^ (mix(left ^ roundKeys[round]) & HALF_MASK);
+            right = left;
+            left = previous;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private static long mix(long z) {
+        // splitmix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
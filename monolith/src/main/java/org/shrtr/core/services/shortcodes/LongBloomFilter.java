@@ -0,0 +1,82 @@
+package org.shrtr.core.services.shortcodes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Bloom filter of {@code long} keys, safe to add to and query from any number of threads without locking.
+ */
+public final class LongBloomFilter {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+
+    private LongBloomFilter(long bits, int hashes) {
+        this.words = new long[(int) ((bits + 63) >>> 6)];
+        this.bits = (long) words.length << 6;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Sizes the filter to keep false positives at {@code falsePositiveRate} with up to {@code expectedKeys} keys.
+     */
+    public static LongBloomFilter forExpectedKeys(long expectedKeys, double falsePositiveRate) {
+        long keys = Math.max(1, expectedKeys);
+        long bits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int hashes = Math.max(1, (int) Math.round((double) bits / keys * Math.log(2)));
+        return new LongBloomFilter(bits, hashes);
+    }
+
+    public void add(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if (((long) WORDS.getAcquire(words, word) & mask) == 0) {
+                WORDS.getAndBitwiseOrRelease(words, word, mask);
+            }
+        }
+    }
+
+    /**
+     * @return false if the key was certainly never added
+     */
+    public boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            if (((long) WORDS.getAcquire(words, (int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bits;
+    }
+
+    /**
+     * Scans the whole filter, meant for metrics rather than the request path.
+     */
+    public double expectedFalsePositiveRate() {
+        long set = 0;
+        for (int i = 0; i < words.length; i++) {
+            set += Long.bitCount((long) WORDS.getAcquire(words, i));
+        }
+        return Math.pow((double) set / bits, hashes);
+    }
+
+    private static long mix(long z) {
+        // splitmix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,190 @@
+package org.shrtr.core.services.shortcodes;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.events.EventFollower;
+import org.shrtr.core.events.codec.EventCodec;
+import org.shrtr.core.events.codec.EventCodecs;
+import org.shrtr.core.events.records.LinkRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter of every short key in the links table, so codes that certainly do not exist, typos and scanners,
+ * are answered without a query.
+ *
+ * Links created on this replica are added as they are created, links created elsewhere when their link.created
+ * or link.batch-created event reaches this replica. Deleted links cannot be removed from a Bloom
+ * filter, so it is rebuilt from the table periodically. Keys added while a rebuild runs go to both filters, and
+ * any link committed after the rebuild started has its event delivered after that.
+ *
+ * Events arrive a while after their link commits, the outbox relay and the broker take their time, and a link
+ * created elsewhere can be clicked meanwhile. Codes are therefore let through as well when their sequence
+ * number, see {@link ShortCodeGenerator}, may have been handed out: below the highest one leased when the filter
+ * was built or seen in a key since, plus {@code sequence-headroom} for the blocks leased in between. Those are
+ * a tiny part of all the possible codes, typos and scanners are still rejected.
+ *
+ * Until the first build completes every code is let through.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShortCodeFilter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShortCodeGenerator generator;
+    private final EventFollower eventFollower;
+    private final EventCodecs codecs;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${shrtr.short-code-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${shrtr.short-code-filter.minimum-capacity:1000000}")
+    private long minimumCapacity;
+
+    @Value("${shrtr.short-code-filter.fetch-size:10000}")
+    private int fetchSize;
+
+    @Value("${shrtr.short-code-filter.sequence-headroom:100000}")
+    private long sequenceHeadroom;
+
+    private volatile LongBloomFilter filter;
+    private volatile LongBloomFilter building;
+    private final AtomicLong keys = new AtomicLong();
+    /** Codes from lower sequence numbers may have been handed out, whether this replica heard of them or not */
+    private final AtomicLong sequenceLimit = new AtomicLong();
+    private EventFollower.Subscription createdLinks;
+    private Counter rejected;
+    private Counter passed;
+
+    @PostConstruct
+    private void init() {
+        rejected = meterRegistry.counter("short-code-filter.lookups", "result", "rejected");
+        passed = meterRegistry.counter("short-code-filter.lookups", "result", "passed");
+        Gauge.builder("short-code-filter.bits", this, f -> f.filter == null ? 0 : f.filter.bitSize())
+                .baseUnit("bits")
+                .register(meterRegistry);
+        Gauge.builder("short-code-filter.keys", keys, AtomicLong::get)
+                .description("Keys in the filter, including deleted links until the next rebuild")
+                .register(meterRegistry);
+        Gauge.builder("short-code-filter.false-positive-rate", this,
+                        f -> f.filter == null ? 1 : f.filter.expectedFalsePositiveRate())
+                .register(meterRegistry);
+
+        followCreatedLinks();
+    }
+
+    @PreDestroy
+    void stop() {
+        createdLinks.close();
+    }
+
+    /**
+     * @return false if no link has this key for sure
+     */
+    public boolean mightExist(long shortKey) {
+        LongBloomFilter current = filter;
+        if (current == null || current.mightContain(shortKey) || generator.sequenceOf(shortKey) < sequenceLimit.get()) {
+            passed.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * @param shortKey generated by {@link ShortCodeGenerator}
+     */
+    public void add(long shortKey) {
+        addToFilters(shortKey);
+        raiseSequenceLimit(generator.sequenceOf(shortKey));
+    }
+
+    private void addToFilters(long shortKey) {
+        LongBloomFilter current = filter;
+        LongBloomFilter next = building;
+        if (current != null) {
+            current.add(shortKey);
+        }
+        if (next != null) {
+            next.add(shortKey);
+        }
+        keys.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${shrtr.short-code-filter.rebuild-interval-ms:3600000}")
+    void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            raiseSequenceLimit(generator.leasedUpTo());
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM links", Long.class);
+            // Room for the links created until the next rebuild
+            LongBloomFilter next = LongBloomFilter.forExpectedKeys(Math.max(minimumCapacity, count * 2), falsePositiveRate);
+            building = next;
+
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(fetchSize);
+            AtomicLong added = new AtomicLong();
+            streaming.query("SELECT short_key, shortened FROM links", resultSet -> {
+                long key = resultSet.getLong("short_key");
+                if (resultSet.wasNull()) {
+                    key = ShortCodeGenerator.toKey(resultSet.getString("shortened"));
+                }
+                if (key >= 0) {
+                    next.add(key);
+                    added.incrementAndGet();
+                }
+            });
+
+            filter = next;
+            building = null;
+            keys.set(added.get());
+            log.info("Rebuilt short code filter with {} keys in {} ms", added.get(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            building = null;
+            log.error("Could not rebuild the short code filter", e);
+        }
+    }
+
+    private void raiseSequenceLimit(long sequence) {
+        sequenceLimit.accumulateAndGet(sequence + sequenceHeadroom, Math::max);
+    }
+
+    private void followCreatedLinks() {
+        createdLinks = eventFollower.follow("link", Set.of("link.created", "link.batch-created"), (routingKey, contentType, body) -> {
+            try {
+                EventCodec codec = codecs.forContentType(contentType);
+                if ("link.batch-created".equals(routingKey)) {
+                    codec.decodeAll(body, LinkRecord.class).forEach(this::addLink);
+                } else {
+                    addLink(codec.decode(body, LinkRecord.class));
+                }
+            } catch (Exception e) {
+                log.error("Could not read created links from {}", routingKey, e);
+            }
+        });
+    }
+
+    private void addLink(LinkRecord link) {
+        if (link.getShortKey() != null) {
+            add(link.getShortKey());
+            return;
+        }
+        // A legacy code, its key tells nothing about the sequence
+        long key = ShortCodeGenerator.toKey(link.getShortened());
+        if (key >= 0) {
+            addToFilters(key);
+        }
+    }
+}
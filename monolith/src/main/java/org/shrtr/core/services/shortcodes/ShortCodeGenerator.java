@@ -0,0 +1,179 @@
+package org.shrtr.core.services.shortcodes;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hands out short codes that cannot collide with each other.
+ *
+ * Every replica leases blocks of sequence numbers from the {@code short_code_sequences} row and turns each
+ * number into a code through a keyed permutation, so only one in {@code blockSize} codes costs a database
+ * round trip and no two numbers, hence no two codes, are ever the same. All replicas must share the same
+ * key, and it must never change once codes have been handed out.
+ *
+ * Links created before codes were generated have random ones, which can be any code of the permutation. The
+ * codes of a block that such links already hold are skipped, whether or not their key has been backfilled yet,
+ * and {@link ShortKeyBackfill} leaves the codes of blocks already leased to generated links.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShortCodeGenerator {
+
+    public static final int CODE_LENGTH = 8;
+    private static final String SEQUENCE = "links";
+    private static final int TAKEN_QUERY_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${shrtr.short-codes.block-size:1000}")
+    @Setter(AccessLevel.PACKAGE)
+    private int blockSize;
+
+    @Value("${shrtr.short-codes.key}")
+    @Setter(AccessLevel.PACKAGE)
+    private long key;
+
+    private TransactionTemplate leaseTransaction;
+    private FeistelPermutation permutation;
+    private long next;
+    private long end;
+    private Set<Long> taken = Set.of();
+
+    @PostConstruct
+    void init() {
+        permutation = new FeistelPermutation(Base62.capacity(CODE_LENGTH), key);
+
+        // Leases commit on their own, a rolled back link must not give its block back
+        leaseTransaction = new TransactionTemplate(transactionManager);
+        leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * @return the numeric key of a new short code, see {@link #toCode(long)}
+     */
+    public synchronized long nextKey() {
+        long key;
+        do {
+            if (next == end) {
+                next = lease();
+                end = next + blockSize;
+            }
+            key = permutation.permute(next++);
+        } while (taken.contains(key));
+        return key;
+    }
+
+    /**
+     * @return the sequence number the key was generated from, if it was generated rather than a legacy code
+     */
+    public long sequenceOf(long key) {
+        return permutation.invert(key);
+    }
+
+    /**
+     * @return the first sequence number no replica has leased yet
+     */
+    public long leasedUpTo() {
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT next_value FROM short_code_sequences WHERE name = ?", Long.class, SEQUENCE);
+        return current.isEmpty() ? 0 : current.get(0);
+    }
+
+    /**
+     * Like {@link #leasedUpTo()}, but no replica can lease more until the caller's transaction ends.
+     */
+    long lockLeasedUpTo() {
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT next_value FROM short_code_sequences WHERE name = ? FOR UPDATE", Long.class, SEQUENCE);
+        return current.isEmpty() ? 0 : current.get(0);
+    }
+
+    public static String toCode(long key) {
+        return Base62.encode(key, CODE_LENGTH);
+    }
+
+    /**
+     * @return the key of the code, or -1 if no link can have been shortened to it
+     */
+    public static long toKey(CharSequence code) {
+        return Base62.decode(code, CODE_LENGTH);
+    }
+
+    private long lease() {
+        Long start = leaseTransaction.execute(status -> {
+            List<Long> current = jdbcTemplate.queryForList(
+                    "SELECT next_value FROM short_code_sequences WHERE name = ? FOR UPDATE", Long.class, SEQUENCE);
+
+            if (current.isEmpty()) {
+                try {
+                    jdbcTemplate.update("INSERT INTO short_code_sequences (name, next_value) VALUES (?, ?)", SEQUENCE, blockSize);
+                    return 0L;
+                } catch (DuplicateKeyException e) {
+                    // another replica created the sequence meanwhile
+                    current = jdbcTemplate.queryForList(
+                            "SELECT next_value FROM short_code_sequences WHERE name = ? FOR UPDATE", Long.class, SEQUENCE);
+                }
+            }
+
+            long leased = current.get(0);
+            jdbcTemplate.update("UPDATE short_code_sequences SET next_value = ? WHERE name = ?", leased + blockSize, SEQUENCE);
+            return leased;
+        });
+        // Checked once the block is ours, the backfill does not hand out its codes to old links anymore
+        taken = takenKeys(start);
+
+        log.info("Leased short codes [{}, {})", start, start + blockSize);
+        return start;
+    }
+
+    private Set<Long> takenKeys(long start) {
+        Set<Long> taken = new HashSet<>();
+        for (long from = start; from < start + blockSize; from += TAKEN_QUERY_SIZE) {
+            List<Object> keys = new ArrayList<>(TAKEN_QUERY_SIZE);
+            List<Object> codes = new ArrayList<>(TAKEN_QUERY_SIZE);
+            for (long sequence = from; sequence < Math.min(from + TAKEN_QUERY_SIZE, start + blockSize); sequence++) {
+                long key = permutation.permute(sequence);
+                keys.add(key);
+                codes.add(toCode(key));
+            }
+            String placeholders = String.join(",", Collections.nCopies(keys.size(), "?"));
+            taken.addAll(jdbcTemplate.queryForList("SELECT short_key FROM links WHERE short_key IN (" + placeholders + ")",
+                    Long.class, keys.toArray()));
+
+            // Old links the backfill has not got to yet only have their code
+            List<String> keyless = jdbcTemplate.queryForList(
+                    "SELECT shortened FROM links WHERE short_key IS NULL AND shortened IN (" + placeholders + ")",
+                    String.class, codes.toArray());
+            for (String shortened : keyless) {
+                // The column may compare case-insensitively, skip every code it matched
+                for (int i = 0; i < codes.size(); i++) {
+                    if (shortened.equalsIgnoreCase((String) codes.get(i))) {
+                        taken.add((Long) keys.get(i));
+                    }
+                }
+            }
+        }
+        if (!taken.isEmpty()) {
+            log.warn("Skipping {} short codes of the block starting at {}, older links have them", taken.size(), start);
+        }
+        return taken;
+    }
+}
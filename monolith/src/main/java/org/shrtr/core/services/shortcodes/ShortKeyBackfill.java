@@ -0,0 +1,169 @@
+package org.shrtr.core.services.shortcodes;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Fills in {@code links.short_key} for links created before it existed, in the background so startup does not
+ * wait on it. Until it is done, lookups that miss on the key fall back to the textual code.
+ *
+ * Every replica runs it, updates are idempotent so they do not need to coordinate. Old codes were random, one
+ * that {@link ShortCodeGenerator} may already have handed out, or that another old link has, keeps no key. Once
+ * done the codes of the links left without a key are kept, so lookups still fall back for those, see
+ * {@link #mayBeKeyless(String)}.
+ */
+@Slf4j
+@Component
+public class ShortKeyBackfill {
+
+    private static final long RETRY_DELAY_MS = 60_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShortCodeGenerator generator;
+    private final TransactionTemplate batchTransaction;
+
+    @Value("${shrtr.short-codes.backfill-batch-size:1000}")
+    @Setter(AccessLevel.PACKAGE)
+    private int batchSize;
+
+    private volatile boolean complete;
+    private volatile Set<String> keylessCodes = Set.of();
+    private Thread worker;
+
+    public ShortKeyBackfill(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                            ShortCodeGenerator generator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.generator = generator;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void init() {
+        worker = new Thread(this::run, "short-key-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        worker.interrupt();
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return whether a link may have the code without its key, so a lookup that misses on the key must also try
+     * the code
+     */
+    public boolean mayBeKeyless(String shortened) {
+        return !complete || keylessCodes.contains(shortened);
+    }
+
+    private void run() {
+        while (!complete && !Thread.currentThread().isInterrupted()) {
+            try {
+                backfill();
+            } catch (Exception e) {
+                log.warn("Could not backfill short keys, retrying in {} ms", RETRY_DELAY_MS, e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * One pass over the links without a key, on the calling thread.
+     */
+    void backfill() {
+        long backfilled = 0;
+        byte[] lastId = new byte[16];
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Object[]> keys = new ArrayList<>(batchSize);
+            List<byte[]> ids = jdbcTemplate.query(
+                    "SELECT id, shortened FROM links WHERE short_key IS NULL AND id > ? ORDER BY id LIMIT ?",
+                    (resultSet, rowNum) -> {
+                        byte[] id = resultSet.getBytes("id");
+                        long key = ShortCodeGenerator.toKey(resultSet.getString("shortened"));
+                        if (key >= 0) {
+                            keys.add(new Object[]{key, id});
+                        } else {
+                            log.warn("Link {} has a short code that is not {} base62 digits, it can only be found by code",
+                                    UuidBytes.fromBytes(id), ShortCodeGenerator.CODE_LENGTH);
+                        }
+                        return id;
+                    },
+                    lastId, batchSize);
+
+            if (!keys.isEmpty()) {
+                backfilled += batchTransaction.execute(status -> update(keys));
+            }
+            if (ids.size() < batchSize) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+        if (backfilled > 0) {
+            log.info("Backfilled the short key of {} links", backfilled);
+        }
+
+        // Only clashing codes are left, a handful at most. Codes that are not base62 are never looked up
+        List<String> keyless = jdbcTemplate.queryForList("SELECT shortened FROM links WHERE short_key IS NULL",
+                String.class);
+        keylessCodes = keyless.stream()
+                .filter(shortened -> shortened != null && ShortCodeGenerator.toKey(shortened) >= 0)
+                .collect(Collectors.toUnmodifiableSet());
+        complete = true;
+    }
+
+    private int update(List<Object[]> keys) {
+        // Held until the batch commits, so no replica leases the codes given to old links meanwhile
+        long leasedUpTo = generator.lockLeasedUpTo();
+        List<Object[]> free = new ArrayList<>(keys.size());
+        for (Object[] key : keys) {
+            if (generator.sequenceOf((long) key[0]) < leasedUpTo) {
+                log.warn("Link {} has a short code that may have been generated for another link, "
+                        + "it is only found by code", UuidBytes.fromBytes((byte[]) key[1]));
+            } else {
+                free.add(key);
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate("UPDATE links SET short_key = ? WHERE id = ? AND short_key IS NULL", free);
+            return free.size();
+        } catch (DuplicateKeyException e) {
+            // Old links may share a code, find out which ones
+            int updated = 0;
+            for (Object[] key : free) {
+                try {
+                    updated += jdbcTemplate.update(
+                            "UPDATE links SET short_key = ? WHERE id = ? AND short_key IS NULL", key);
+                } catch (DuplicateKeyException duplicate) {
+                    log.warn("Link {} has the short code of another link, it is only found by code",
+                            UuidBytes.fromBytes((byte[]) key[1]));
+                }
+            }
+            return updated;
+        }
+    }
+}
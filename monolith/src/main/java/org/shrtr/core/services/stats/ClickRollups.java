@@ -0,0 +1,230 @@
+package org.shrtr.core.services.stats;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.shrtr.core.domain.entities.ClickResolution;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per link click counts, pre-aggregated so owners get statistics without going through the raw events.
+ *
+ * Clicks are counted in memory per link and minute and flushed in batches into the {@code link_click_rollups}
+ * minute buckets with {@code INSERT ... ON DUPLICATE KEY UPDATE}, adding to {@code links.counter} in the same
+ * transaction. Hour buckets are compacted from the minute ones and day buckets from the hour ones; every pass
+ * recomputes the recent buckets entirely, so running it on several replicas or twice is harmless. Minute and
+ * hour buckets are only kept for a while, day buckets forever.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClickRollups {
+
+    private static final long MINUTE_MS = 60_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @org.springframework.beans.factory.annotation.Value("${shrtr.click-rollups.flush-batch-size:500}")
+    @Setter(AccessLevel.PACKAGE)
+    private int flushBatchSize;
+
+    @org.springframework.beans.factory.annotation.Value("${shrtr.click-rollups.minute-retention:2d}")
+    @Setter(AccessLevel.PACKAGE)
+    private Duration minuteRetention;
+
+    @org.springframework.beans.factory.annotation.Value("${shrtr.click-rollups.hour-retention:90d}")
+    @Setter(AccessLevel.PACKAGE)
+    private Duration hourRetention;
+
+    private final Map<Bucket, AtomicLong> pending = new ConcurrentHashMap<>();
+    private TransactionTemplate transactionTemplate;
+    private Counter failures;
+    /** Start of the range the next compaction recomputes, null until the first one */
+    private LocalDateTime compactFrom;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Gauge.builder("click-rollups.pending", pending, Map::size)
+                .description("Link minutes waiting to be flushed")
+                .register(meterRegistry);
+        failures = meterRegistry.counter("click-rollups.failures");
+    }
+
+    public void recordClick(UUID linkId) {
+        pending.computeIfAbsent(new Bucket(linkId, System.currentTimeMillis() / MINUTE_MS), bucket -> new AtomicLong())
+                .incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${shrtr.click-rollups.flush-interval-ms:5000}")
+    void flush() {
+        long currentMinute = System.currentTimeMillis() / MINUTE_MS;
+        Map<Bucket, Long> clicks = new HashMap<>();
+        Map<UUID, Long> linkClicks = new HashMap<>();
+        for (Map.Entry<Bucket, AtomicLong> entry : pending.entrySet()) {
+            long count = entry.getValue().getAndSet(0);
+            if (count > 0) {
+                clicks.put(entry.getKey(), count);
+                linkClicks.merge(entry.getKey().getLinkId(), count, Long::sum);
+            } else if (entry.getKey().getMinute() < currentMinute - 1) {
+                // Left a minute of grace for clicks that were being counted when the minute ended
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (clicks.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO link_click_rollups (link_id, resolution, bucket_start, clicks) VALUES (?, 'MINUTE', ?, ?) " +
+                                "ON DUPLICATE KEY UPDATE clicks = clicks + VALUES(clicks)",
+                        clicks.entrySet(),
+                        flushBatchSize,
+                        (statement, entry) -> {
+                            statement.setBytes(1, UuidBytes.toBytes(entry.getKey().getLinkId()));
+                            statement.setObject(2, toUtc(entry.getKey().getMinute() * MINUTE_MS));
+                            statement.setLong(3, entry.getValue());
+                        });
+                jdbcTemplate.batchUpdate(
+                        "UPDATE links SET counter = counter + ? WHERE id = ?",
+                        linkClicks.entrySet(),
+                        flushBatchSize,
+                        (statement, entry) -> {
+                            statement.setLong(1, entry.getValue());
+                            statement.setBytes(2, UuidBytes.toBytes(entry.getKey()));
+                        });
+            });
+            log.debug("Flushed clicks of {} link minutes", clicks.size());
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Could not flush clicks of {} link minutes, retrying with the next flush", clicks.size(), e);
+            clicks.forEach((bucket, count) -> pending.computeIfAbsent(bucket, b -> new AtomicLong()).addAndGet(count));
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    @Scheduled(fixedDelayString = "${shrtr.click-rollups.compaction-interval-ms:300000}",
+            initialDelayString = "${shrtr.click-rollups.compaction-interval-ms:300000}")
+    void compact() {
+        LocalDateTime now = now();
+        // At first everything that can still be compacted: the hours whose minutes are all kept. The hour the
+        // retention ends in may have lost some of them already, to this replica before a restart or to another
+        // one, and recomputing it would undercount it.
+        LocalDateTime from = compactFrom != null ? compactFrom : minutesKeptFrom(now).plusHours(1);
+        try {
+            compact(ClickResolution.MINUTE, ClickResolution.HOUR, "DATE_FORMAT(bucket_start, '%Y-%m-%d %H:00:00')", from);
+            compact(ClickResolution.HOUR, ClickResolution.DAY, "DATE(bucket_start)", from);
+
+            jdbcTemplate.update("DELETE FROM link_click_rollups WHERE resolution = 'MINUTE' AND bucket_start < ?",
+                    minutesKeptFrom(now));
+            jdbcTemplate.update("DELETE FROM link_click_rollups WHERE resolution = 'HOUR' AND bucket_start < ?",
+                    now.minus(hourRetention));
+
+            // The last hour again, for the minutes flushed late
+            compactFrom = now.minusHours(1);
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Could not compact click rollups", e);
+        }
+    }
+
+    /**
+     * Minutes are deleted by whole hours, so an hour has either all its minutes or none.
+     */
+    private LocalDateTime minutesKeptFrom(LocalDateTime now) {
+        return ClickResolution.HOUR.bucketOf(now.minus(minuteRetention));
+    }
+
+    /**
+     * Recomputes the {@code target} buckets from the {@code source} ones, from the bucket that contains {@code from}.
+     */
+    private void compact(ClickResolution source, ClickResolution target, String bucketExpression, LocalDateTime from) {
+        int compacted = jdbcTemplate.update(
+                "INSERT INTO link_click_rollups (link_id, resolution, bucket_start, clicks) " +
+                        "SELECT link_id, ?, " + bucketExpression + ", SUM(clicks) FROM link_click_rollups " +
+                        "WHERE resolution = ? AND bucket_start >= ? " +
+                        "GROUP BY link_id, " + bucketExpression + " " +
+                        "ON DUPLICATE KEY UPDATE clicks = VALUES(clicks)",
+                target.name(), source.name(), target.bucketOf(from));
+        log.debug("Compacted {} {} click buckets", compacted, target);
+    }
+
+    /**
+     * @param from inclusive, rounded down to the resolution
+     * @param to exclusive
+     */
+    public LinkStats getStats(UUID linkId, ClickResolution resolution, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = resolution.bucketOf(from);
+        List<LinkStats.Bucket> buckets = jdbcTemplate.query(
+                "SELECT bucket_start, clicks FROM link_click_rollups " +
+                        "WHERE link_id = ? AND resolution = ? AND bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start",
+                (resultSet, rowNum) -> new LinkStats.Bucket(
+                        resultSet.getObject("bucket_start", LocalDateTime.class),
+                        resultSet.getLong("clicks")),
+                UuidBytes.toBytes(linkId), resolution.name(), start, to);
+
+        long clicks = buckets.stream().mapToLong(LinkStats.Bucket::getClicks).sum();
+        return new LinkStats(linkId, resolution, start, to, clicks, buckets);
+    }
+
+    /**
+     * The finest resolution that is still kept for the whole range and does not take too many buckets.
+     */
+    public ClickResolution defaultResolution(LocalDateTime from, LocalDateTime to) {
+        Duration range = Duration.between(from, to);
+        if (range.compareTo(Duration.ofHours(6)) <= 0 && !from.isBefore(now().minus(minuteRetention))) {
+            return ClickResolution.MINUTE;
+        }
+        if (range.compareTo(Duration.ofDays(14)) <= 0 && !from.isBefore(now().minus(hourRetention))) {
+            return ClickResolution.HOUR;
+        }
+        return ClickResolution.DAY;
+    }
+
+    public void deleteLink(UUID linkId) {
+        jdbcTemplate.update("DELETE FROM link_click_rollups WHERE link_id = ?", (Object) UuidBytes.toBytes(linkId));
+    }
+
+    public static LocalDateTime now() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime toUtc(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    @Value
+    private static class Bucket {
+        UUID linkId;
+        long minute;
+    }
+}
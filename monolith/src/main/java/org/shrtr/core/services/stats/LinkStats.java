@@ -0,0 +1,28 @@
+package org.shrtr.core.services.stats;
+
+import lombok.Value;
+import org.shrtr.core.domain.entities.ClickResolution;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Clicks of a link over a range, in UTC buckets. Buckets without clicks are left out.
+ */
+@Value
+public class LinkStats {
+
+    UUID linkId;
+    ClickResolution resolution;
+    LocalDateTime from;
+    LocalDateTime to;
+    long clicks;
+    List<Bucket> buckets;
+
+    @Value
+    public static class Bucket {
+        LocalDateTime start;
+        long clicks;
+    }
+}
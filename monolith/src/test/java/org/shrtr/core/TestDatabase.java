@@ -0,0 +1,98 @@
+package org.shrtr.core;
+
+import lombok.Getter;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.schema.TargetType;
+import org.shrtr.core.domain.entities.BaseEntity;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.persistence.Entity;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.UUID;
+
+/**
+ * A fresh in-memory H2 database in MySQL mode, with the tables ddl-auto creates from the entities, for tests of
+ * the components that go to the database through JDBC. MariaDB functions H2 lacks are added as aliases.
+ */
+@Getter
+public class TestDatabase {
+
+    private final JdbcDataSource dataSource = new JdbcDataSource();
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceTransactionManager transactionManager;
+
+    public TestDatabase() {
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        createSchema();
+        jdbcTemplate.execute("CREATE ALIAS DATE_FORMAT FOR \"" + TestDatabase.class.getName() + ".dateFormat\"");
+    }
+
+    /**
+     * MariaDB's DATE_FORMAT, for the specifiers of dates and times of day only.
+     */
+    public static String dateFormat(Timestamp time, String format) {
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c != '%' || i + 1 == format.length()) {
+                pattern.append(Character.isLetter(c) ? "'" + c + "'" : String.valueOf(c));
+                continue;
+            }
+            char specifier = format.charAt(++i);
+            pattern.append(switch (specifier) {
+                case 'Y' -> "yyyy";
+                case 'm' -> "MM";
+                case 'd' -> "dd";
+                case 'H' -> "HH";
+                case 'i' -> "mm";
+                case 's' -> "ss";
+                default -> throw new IllegalArgumentException("Unsupported DATE_FORMAT specifier %" + specifier);
+            });
+        }
+        return time.toLocalDateTime().format(DateTimeFormatter.ofPattern(pattern.toString()));
+    }
+
+    private void createSchema() {
+        // The naming strategies Spring Boot configures Hibernate with
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DATASOURCE, dataSource)
+                .applySetting(AvailableSettings.DIALECT, H2Dialect.class.getName())
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY,
+                        CamelCaseToUnderscoresNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.IMPLICIT_NAMING_STRATEGY,
+                        SpringImplicitNamingStrategy.class.getName())
+                .build();
+        try {
+            MetadataSources sources = new MetadataSources(registry);
+            ClassPathScanningCandidateComponentProvider entities =
+                    new ClassPathScanningCandidateComponentProvider(false);
+            entities.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+            entities.findCandidateComponents(BaseEntity.class.getPackageName())
+                    .stream()
+                    .map(BeanDefinition::getBeanClassName)
+                    .forEach(sources::addAnnotatedClassName);
+
+            SchemaExport schemaExport = new SchemaExport();
+            schemaExport.setHaltOnError(true);
+            schemaExport.createOnly(EnumSet.of(TargetType.DATABASE), sources.buildMetadata());
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.shrtr.core.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.Test;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.shrtr.core.events.codec.EventCodecs;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KafkaEventServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void redirectsAreKeyedByLinkId() {
+        MockProducer<byte[], byte[]> producer = producer(true);
+        KafkaEventService service = service(producer);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        service.publishRedirects(List.of(redirect(first), redirect(second), redirect(first)));
+
+        List<ProducerRecord<byte[], byte[]>> sent = producer.history();
+        assertEquals(3, sent.size());
+        assertArrayEquals(UuidBytes.toBytes(first), sent.get(0).key());
+        assertArrayEquals(UuidBytes.toBytes(second), sent.get(1).key());
+        assertArrayEquals(UuidBytes.toBytes(first), sent.get(2).key());
+        assertEquals("shrtr.link", sent.get(0).topic());
+        assertEquals("link.redirected", header(sent.get(0), KafkaEventService.ROUTING_KEY_HEADER));
+        assertEquals("application/json", header(sent.get(0), KafkaEventService.CONTENT_TYPE_HEADER));
+    }
+
+    @Test
+    void redirectSendsAreCountedFromTheirCallbacks() {
+        MockProducer<byte[], byte[]> producer = producer(false);
+        KafkaEventService service = service(producer);
+
+        service.publishRedirects(List.of(redirect(UUID.randomUUID()), redirect(UUID.randomUUID()), redirect(UUID.randomUUID())));
+        assertEquals(0, count("events.kafka.sent"));
+
+        producer.completeNext();
+        producer.errorNext(new RuntimeException("broker gone"));
+        producer.completeNext();
+
+        assertEquals(2, count("events.kafka.sent"));
+        assertEquals(1, count("events.kafka.failed"));
+    }
+
+    @Test
+    void outboxBatchesCarryTheirPartitionKeyAndMessageId() {
+        MockProducer<byte[], byte[]> producer = producer(true);
+        KafkaEventService service = service(producer);
+        UUID owner = UUID.randomUUID();
+
+        service.publish(List.of(outboxMessage(1, owner), outboxMessage(2, null)));
+
+        List<ProducerRecord<byte[], byte[]>> sent = producer.history();
+        assertEquals("shrtr.link", sent.get(0).topic());
+        assertArrayEquals(UuidBytes.toBytes(owner), sent.get(0).key());
+        assertEquals("link.created", header(sent.get(0), KafkaEventService.ROUTING_KEY_HEADER));
+        assertEquals("1", header(sent.get(0), KafkaEventService.MESSAGE_ID_HEADER));
+        assertNull(sent.get(1).key());
+        assertEquals("2", header(sent.get(1), KafkaEventService.MESSAGE_ID_HEADER));
+    }
+
+    @Test
+    void outboxBatchFailsIfAnySendFails() throws Exception {
+        MockProducer<byte[], byte[]> producer = producer(false);
+        KafkaEventService service = service(producer);
+
+        CompletableFuture<Void> publishing = CompletableFuture.runAsync(() ->
+                service.publish(List.of(outboxMessage(1, null), outboxMessage(2, null))));
+        while (producer.history().size() < 2) {
+            Thread.sleep(1);
+        }
+        assertFalse(publishing.isDone());
+
+        producer.completeNext();
+        producer.errorNext(new RuntimeException("not enough replicas"));
+
+        CompletionException failure = assertThrows(CompletionException.class, publishing::join);
+        assertInstanceOf(KafkaException.class, failure.getCause());
+    }
+
+    @Test
+    void followingStartsWithoutTheBrokerAndRecoversFromFailures() throws Exception {
+        TopicPartition partition = new TopicPartition("shrtr.link", 0);
+        // Broker unreachable, then one that fails after the first event, then one that works
+        FollowingConsumer unreachable = new FollowingConsumer() {
+            @Override
+            public synchronized List<PartitionInfo> partitionsFor(String topic) {
+                throw new TimeoutException("no broker");
+            }
+        };
+        FollowingConsumer failing = new FollowingConsumer(partition);
+        failing.updateEndOffsets(Map.of(partition, 5L));
+        failing.schedulePollTask(() -> failing.addRecord(event(partition, 5, "link.created")));
+        failing.schedulePollTask(() -> failing.setPollException(new KafkaException("broker gone")));
+        FollowingConsumer working = new FollowingConsumer(partition);
+        working.updateEndOffsets(Map.of(partition, 7L));
+        working.schedulePollTask(() -> {
+            working.addRecord(event(partition, 6, "link.created"));
+            working.addRecord(event(partition, 7, "link.updated"));
+        });
+
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        KafkaEventService service = service(producer(true), List.of(unreachable, failing, working).iterator()::next);
+        try (EventFollower.Subscription subscription = service.follow("link", Set.of("link.created"),
+                (routingKey, contentType, body) -> received.add(new String(body, StandardCharsets.UTF_8)))) {
+
+            assertEquals("event-5", received.poll(5, TimeUnit.SECONDS));
+            // The next consumer picks up after the last event read
+            assertEquals("event-6", received.poll(5, TimeUnit.SECONDS));
+            assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!working.closed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(working.closed());
+    }
+
+    @Test
+    void partitionsAddedLaterAreFollowed() throws Exception {
+        TopicPartition first = new TopicPartition("shrtr.link", 0);
+        TopicPartition added = new TopicPartition("shrtr.link", 1);
+        FollowingConsumer consumer = new FollowingConsumer(first);
+        consumer.updateEndOffsets(Map.of(first, 0L, added, 0L));
+        consumer.schedulePollTask(() -> consumer.updatePartitions("shrtr.link",
+                List.of(partitionInfo(first), partitionInfo(added))));
+        consumer.schedulePollTask(new Runnable() {
+            @Override
+            public void run() {
+                if (consumer.assignment().contains(added)) {
+                    consumer.addRecord(event(added, 0, "link.created"));
+                } else {
+                    consumer.schedulePollTask(this);
+                }
+            }
+        });
+
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        KafkaEventService service = service(producer(true), () -> consumer);
+        try (EventFollower.Subscription subscription = service.follow("link", Set.of("link.created"),
+                (routingKey, contentType, body) -> received.add(new String(body, StandardCharsets.UTF_8)))) {
+
+            assertEquals("event-0", received.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private MockProducer<byte[], byte[]> producer(boolean autoComplete) {
+        return new MockProducer<>(autoComplete, new ByteArraySerializer(), new ByteArraySerializer());
+    }
+
+    private KafkaEventService service(MockProducer<byte[], byte[]> producer) {
+        return service(producer, null);
+    }
+
+    private KafkaEventService service(MockProducer<byte[], byte[]> producer, Supplier<Consumer<byte[], byte[]>> consumers) {
+        EventCodecs codecs = new EventCodecs(new ObjectMapper().findAndRegisterModules(), "application/json");
+        KafkaEventService service = new KafkaEventService(null, codecs, producer, null, consumers, meterRegistry);
+        ReflectionTestUtils.setField(service, "topicPrefix", "shrtr.");
+        ReflectionTestUtils.setField(service, "outboxConfirmTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(service, "followRetryInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(service, "followPartitionRefreshInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.invokeMethod(service, "initMeters");
+        return service;
+    }
+
+    private static LinkRedirectedEvent redirect(UUID linkId) {
+        return new LinkRedirectedEvent(LocalDateTime.now(), linkId, "https://example.com", "0000001", "someone", 1L);
+    }
+
+    private static OutboxMessage outboxMessage(long id, UUID partitionKey) {
+        return new OutboxMessage(id, "link", "link.created", partitionKey, "application/json",
+                "{}".getBytes(StandardCharsets.UTF_8), LocalDateTime.now());
+    }
+
+    private static ConsumerRecord<byte[], byte[]> event(TopicPartition partition, long offset, String routingKey) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(KafkaEventService.ROUTING_KEY_HEADER, routingKey.getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaEventService.CONTENT_TYPE_HEADER, "application/json".getBytes(StandardCharsets.UTF_8));
+        return new ConsumerRecord<>(partition.topic(), partition.partition(), offset, System.currentTimeMillis(),
+                TimestampType.CREATE_TIME, 0, 0, null, ("event-" + offset).getBytes(StandardCharsets.UTF_8),
+                headers, Optional.empty());
+    }
+
+    private static PartitionInfo partitionInfo(TopicPartition partition) {
+        return new PartitionInfo(partition.topic(), partition.partition(), null, null, null);
+    }
+
+    /**
+     * Finds no event by time, as a broker would for partitions nothing was published to since following started.
+     */
+    private static class FollowingConsumer extends MockConsumer<byte[], byte[]> {
+
+        FollowingConsumer(TopicPartition... partitions) {
+            super(OffsetResetStrategy.NONE);
+            if (partitions.length > 0) {
+                updatePartitions(partitions[0].topic(), Arrays.stream(partitions).map(KafkaEventServiceTest::partitionInfo).toList());
+            }
+        }
+
+        @Override
+        public synchronized Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> timestamps) {
+            return new HashMap<>();
+        }
+    }
+
+    private static String header(ProducerRecord<byte[], byte[]> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name, "stream", "redirects").count();
+    }
+}
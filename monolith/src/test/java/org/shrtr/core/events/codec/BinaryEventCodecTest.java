@@ -0,0 +1,202 @@
+package org.shrtr.core.events.codec;
+
+import org.junit.jupiter.api.Test;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.shrtr.core.events.LinkRedirectedEvent;
+import org.shrtr.core.events.records.LinkRecord;
+import org.shrtr.core.events.records.OwnerRecord;
+import org.shrtr.core.events.records.RoleRecord;
+import org.shrtr.core.events.records.UserRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryEventCodecTest {
+
+    /**
+     * {@link #link()} in a batch of one and {@link #user()}, as the redirect edge's {@code BinaryEventsTest}
+     * reads them. Changing how they are written breaks the edge too.
+     */
+    static final String LINK_BATCH = "8102de01016f1c2a3b4d5e4f60817293a4b5c6d7e83c68747470733a2f2f6578616d706c652e636f"
+            + "6d2f736f6d652f7061676512303030306162636401aab4de75540180f897b0ccbceb0501808094f8"
+            + "8cc1eb05010a1b2c3d4e5f406182738495a6b7c8d90c6f776e657201c80101c0a90702";
+    static final String USER = "02010a1b2c3d4e5f406182738495a6b7c8d90c6f776e6572084164610001c801c0a907030180f897"
+            + "b0ccbceb0501808094f88cc1eb05";
+
+    private static final LocalDateTime CREATED_ON = LocalDateTime.of(2022, 2, 1, 10, 30, 15, 123_456_000);
+    private static final LocalDateTime UPDATED_ON = LocalDateTime.of(2022, 2, 2, 8, 0);
+
+    private final BinaryEventCodec codec = new BinaryEventCodec();
+
+    @Test
+    void linksRoundTrip() {
+        LinkRecord link = link();
+        assertEquals(link, codec.decode(codec.encode(link), LinkRecord.class));
+    }
+
+    @Test
+    void linksWithoutOwnerOrOptionalValuesRoundTrip() {
+        LinkRecord link = LinkRecord.builder()
+                .id(UUID.randomUUID())
+                .original("https://example.com/ünïcode")
+                .counter(-3)
+                .build();
+        assertEquals(link, codec.decode(codec.encode(link), LinkRecord.class));
+
+        LinkRecord partialOwner = LinkRecord.builder()
+                .id(UUID.randomUUID())
+                .owner(OwnerRecord.builder().id(UUID.randomUUID()).build())
+                .build();
+        assertEquals(partialOwner, codec.decode(codec.encode(partialOwner), LinkRecord.class));
+    }
+
+    @Test
+    void usersRoundTrip() {
+        UserRecord user = user();
+        assertEquals(user, codec.decode(codec.encode(user), UserRecord.class));
+
+        UserRecord empty = UserRecord.builder().id(UUID.randomUUID()).build();
+        assertEquals(empty, codec.decode(codec.encode(empty), UserRecord.class));
+    }
+
+    @Test
+    void rolesRoundTrip() {
+        RoleRecord role = RoleRecord.builder().id(UUID.randomUUID()).name("ADMIN").createdOn(CREATED_ON).build();
+        assertEquals(role, codec.decode(codec.encode(role), RoleRecord.class));
+    }
+
+    @Test
+    void redirectsRoundTrip() {
+        LinkRedirectedEvent redirected = new LinkRedirectedEvent(CREATED_ON, UUID.randomUUID(), "https://example.com",
+                "0000001a", "someone", 1234L);
+        assertRedirectEquals(redirected, codec.decode(codec.encode(redirected), LinkRedirectedEvent.class));
+
+        LinkRedirectedEvent withoutLatency = new LinkRedirectedEvent(CREATED_ON, UUID.randomUUID(), null, null, null, null);
+        assertRedirectEquals(withoutLatency, codec.decode(codec.encode(withoutLatency), LinkRedirectedEvent.class));
+    }
+
+    @Test
+    void batchesRoundTrip() {
+        List<LinkRecord> links = List.of(link(), LinkRecord.builder().id(UUID.randomUUID()).build(), link());
+        assertEquals(links, codec.decodeAll(codec.encodeAll(links), LinkRecord.class));
+    }
+
+    @Test
+    void batchesHoldOneTypeOfRecord() {
+        assertThrows(EventCodecException.class, () -> codec.encodeAll(List.of(link(), user())));
+        assertThrows(EventCodecException.class, () -> codec.encodeAll(List.of()));
+        assertThrows(EventCodecException.class, () -> codec.decodeAll(codec.encode(link()), LinkRecord.class));
+        assertThrows(EventCodecException.class, () -> codec.decode(codec.encode(link()), UserRecord.class));
+    }
+
+    @Test
+    void unknownEnumConstantsAreReadAsNull() {
+        // No timestamps, so the strategy comes right before their two absent markers
+        byte[] payload = codec.encode(userBuilder().createdOn(null).updatedOn(null).build());
+        payload[payload.length - 3] = (byte) (RateLimitStrategy.values().length + 1);
+
+        UserRecord user = codec.decode(payload, UserRecord.class);
+        assertNull(user.getRateLimitStrategy());
+        assertEquals(user().getUsername(), user.getUsername());
+    }
+
+    @Test
+    void fieldsAppendedByNewerVersionsAreSkipped() {
+        RoleRecord first = RoleRecord.builder().id(UUID.randomUUID()).name("first").build();
+        RoleRecord second = RoleRecord.builder().id(UUID.randomUUID()).name("second").build();
+
+        // A batch written by a version 2 that appended three bytes to the first record
+        byte[] firstRecord = recordOf(first);
+        firstRecord[0] = 2;
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        batch.write(BinaryEventCodec.ROLE | BinaryEventCodec.BATCH);
+        batch.write(2 << 1);
+        batch.write((firstRecord.length + 3) << 1);
+        batch.writeBytes(firstRecord);
+        batch.writeBytes(new byte[]{7, 7, 7});
+        byte[] secondRecord = recordOf(second);
+        batch.write(secondRecord.length << 1);
+        batch.writeBytes(secondRecord);
+
+        List<RoleRecord> roles = codec.decodeAll(batch.toByteArray(), RoleRecord.class);
+        assertEquals(RoleRecord.builder().version(2).id(first.getId()).name("first").build(), roles.get(0));
+        assertEquals(second, roles.get(1));
+    }
+
+    @Test
+    void truncatedPayloadsAreRejected() {
+        byte[] payload = codec.encode(link());
+        for (int length = 0; length < payload.length - 1; length++) {
+            byte[] truncated = Arrays.copyOf(payload, length);
+            assertThrows(EventCodecException.class, () -> codec.decode(truncated, LinkRecord.class));
+        }
+    }
+
+    @Test
+    void wireFormatIsStable() {
+        assertEquals(LINK_BATCH, HexFormat.of().formatHex(codec.encodeAll(List.of(link()))));
+        assertEquals(USER, HexFormat.of().formatHex(codec.encode(user())));
+    }
+
+    /**
+     * @return the bytes of the record in a batch of one, after its length, which must take a single byte
+     */
+    private byte[] recordOf(RoleRecord role) {
+        byte[] batch = codec.encodeAll(List.of(role));
+        return Arrays.copyOfRange(batch, 3, batch.length);
+    }
+
+    static LinkRecord link() {
+        return LinkRecord.builder()
+                .id(UUID.fromString("6f1c2a3b-4d5e-4f60-8172-93a4b5c6d7e8"))
+                .original("https://example.com/some/page")
+                .shortened("0000abcd")
+                .shortKey(123_456_789L)
+                .counter(42)
+                .createdOn(CREATED_ON)
+                .updatedOn(UPDATED_ON)
+                .owner(OwnerRecord.builder()
+                        .id(UUID.fromString("0a1b2c3d-4e5f-4061-8273-8495a6b7c8d9"))
+                        .username("owner")
+                        .maxRequests(100L)
+                        .maxRequestsWindowMs(60_000L)
+                        .rateLimitStrategy(RateLimitStrategy.TOKEN_BUCKET)
+                        .build())
+                .build();
+    }
+
+    static UserRecord user() {
+        return userBuilder().build();
+    }
+
+    private static UserRecord.UserRecordBuilder userBuilder() {
+        return UserRecord.builder()
+                .id(UUID.fromString("0a1b2c3d-4e5f-4061-8273-8495a6b7c8d9"))
+                .username("owner")
+                .firstName("Ada")
+                .lastName(null)
+                .enabled(true)
+                .maxRequests(100)
+                .maxRequestsWindowMs(60_000)
+                .rateLimitStrategy(RateLimitStrategy.SLIDING_WINDOW_COUNTER)
+                .createdOn(CREATED_ON)
+                .updatedOn(UPDATED_ON);
+    }
+
+    private static void assertRedirectEquals(LinkRedirectedEvent expected, LinkRedirectedEvent actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getOriginal(), actual.getOriginal());
+        assertEquals(expected.getShortened(), actual.getShortened());
+        assertEquals(expected.getOwnerUsername(), actual.getOwnerUsername());
+        assertEquals(expected.getLatency(), actual.getLatency());
+    }
+}
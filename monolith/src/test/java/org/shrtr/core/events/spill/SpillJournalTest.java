@@ -0,0 +1,171 @@
+package org.shrtr.core.events.spill;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillJournalTest {
+
+    private static final String JSON = "application/json";
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysOldestFirst() throws IOException {
+        try (SpillJournal journal = journal(10)) {
+            journal.append(JSON, payloads(0, 50));
+
+            assertEquals(texts(0, 50), replayAll(journal));
+            assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test
+    void keepsWhatWasReplayedAcrossReopening() throws IOException {
+        try (SpillJournal journal = journal(10)) {
+            journal.append(JSON, payloads(0, 10));
+            SpillSegment segment = journal.nextToReplay();
+            segment.read(4);
+            segment.replayed(4);
+        }
+
+        try (SpillJournal journal = journal(10)) {
+            assertEquals(texts(4, 10), replayAll(journal));
+        }
+    }
+
+    @Test
+    void deletesReplayedSegmentsWhenReopening() throws IOException {
+        try (SpillJournal journal = journal(10)) {
+            journal.append(JSON, payloads(0, 3));
+            SpillSegment segment = journal.nextToReplay();
+            segment.replayed(3);
+        }
+
+        try (SpillJournal journal = journal(10)) {
+            assertTrue(journal.isEmpty());
+            assertEquals(0, journal.getSegments());
+        }
+        assertEquals(0, segmentFiles().size());
+    }
+
+    @Test
+    void stopsAtATornRecord() throws IOException {
+        try (SpillJournal journal = journal(10)) {
+            journal.append(JSON, payloads(0, 3));
+        }
+        // The last payload damaged, as if the process died while writing it
+        Path segment = segmentFiles().get(0);
+        int lastPayload = SpillSegment.HEADER_SIZE + 2 * (8 + "event-0".length()) + 8;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), lastPayload);
+        }
+
+        try (SpillJournal journal = journal(10)) {
+            assertEquals(texts(0, 2), replayAll(journal));
+        }
+    }
+
+    @Test
+    void skipsSegmentsThatWereNeverWritten() throws IOException {
+        // Created, then the process died before mapping them
+        Files.createFile(directory.resolve("spill-00000000000000000000.journal"));
+        Files.write(directory.resolve("spill-00000000000000000001.journal"), "SHRTR".getBytes(StandardCharsets.US_ASCII));
+
+        try (SpillJournal journal = journal(10)) {
+            assertTrue(journal.isEmpty());
+            journal.append(JSON, payloads(0, 2));
+            assertEquals(texts(0, 2), replayAll(journal));
+        }
+        // Left for someone to look at, the new segments do not reuse their names
+        assertTrue(Files.exists(directory.resolve("spill-00000000000000000000.journal")));
+    }
+
+    @Test
+    void dropsWhatDoesNotFit() throws IOException {
+        try (SpillJournal journal = journal(2)) {
+            int appended = journal.append(JSON, payloads(0, 1000));
+
+            assertTrue(appended > 0 && appended < 1000);
+            assertEquals(2, journal.getSegments());
+            assertEquals(0, journal.append(JSON, payloads(1000, 1001)));
+            assertEquals(texts(0, appended), replayAll(journal));
+        }
+    }
+
+    @Test
+    void limitsSegmentsLeftByAPreviousRun() throws IOException {
+        try (SpillJournal journal = journal(10)) {
+            journal.append(JSON, payloads(0, 1000));
+            assertTrue(journal.getSegments() > 2);
+        }
+
+        try (SpillJournal journal = journal(2)) {
+            int segments = journal.getSegments();
+            assertEquals(0, journal.append(JSON, payloads(1000, 1001)));
+            assertEquals(segments, journal.getSegments());
+        }
+    }
+
+    @Test
+    void startsANewSegmentForAnotherContentType() throws IOException {
+        try (SpillJournal journal = journal(10)) {
+            journal.append(JSON, payloads(0, 2));
+            journal.append("application/x-shrtr-event", payloads(2, 4));
+
+            SpillSegment first = journal.nextToReplay();
+            assertEquals(JSON, first.getContentType());
+            first.replayed(first.read(10).size());
+            assertEquals("application/x-shrtr-event", journal.nextToReplay().getContentType());
+        }
+    }
+
+    private SpillJournal journal(int maxSegments) throws IOException {
+        return new SpillJournal(directory, SEGMENT_SIZE, maxSegments);
+    }
+
+    private static List<String> replayAll(SpillJournal journal) throws IOException {
+        List<String> replayed = new ArrayList<>();
+        SpillSegment segment;
+        while ((segment = journal.nextToReplay()) != null) {
+            List<byte[]> payloads = segment.read(7);
+            payloads.forEach(payload -> replayed.add(new String(payload, StandardCharsets.UTF_8)));
+            segment.replayed(payloads.size());
+        }
+        assertNull(journal.nextToReplay());
+        return replayed;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static List<byte[]> payloads(int from, int to) {
+        return texts(from, to).stream().map(text -> text.getBytes(StandardCharsets.UTF_8)).toList();
+    }
+
+    private static List<String> texts(int from, int to) {
+        List<String> texts = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            texts.add("event-" + i);
+        }
+        return texts;
+    }
+}
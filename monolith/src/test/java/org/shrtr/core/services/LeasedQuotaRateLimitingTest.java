@@ -0,0 +1,154 @@
+package org.shrtr.core.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shrtr.core.TestDatabase;
+import org.shrtr.core.domain.entities.RateLimitStrategy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeasedQuotaRateLimitingTest {
+
+    /** Windows are aligned on multiples of their length, this one starts at the epoch and never ends in a test */
+    private static final long ENDLESS_WINDOW_MS = Long.MAX_VALUE / 4;
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void createDatabase() {
+        TestDatabase database = new TestDatabase();
+        jdbcTemplate = database.getJdbcTemplate();
+        transactionManager = database.getTransactionManager();
+    }
+
+    @Test
+    void replicasNeverGoOverTheLimitTogether() throws Exception {
+        RedirectTarget target = target(1000, ENDLESS_WINDOW_MS);
+        List<LeasedQuotaRateLimiting> replicas = List.of(replica(), replica(), replica());
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<Integer>> allowed = new ArrayList<>();
+        for (int thread = 0; thread < 6; thread++) {
+            LeasedQuotaRateLimiting replica = replicas.get(thread % replicas.size());
+            allowed.add(executor.submit(() -> {
+                int count = 0;
+                for (int i = 0; i < 500; i++) {
+                    if (!replica.limitExceeded(target)) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> future : allowed) {
+            total += future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(1000, total);
+        assertEquals(1000L, jdbcTemplate.queryForObject("SELECT SUM(granted) FROM rate_limit_leases", Long.class));
+    }
+
+    @Test
+    void leasesOneSlicePerRoundTrip() {
+        LeasedQuotaRateLimiting replica = replica();
+        RedirectTarget target = target(1000, ENDLESS_WINDOW_MS);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(replica.limitExceeded(target));
+        }
+
+        // 5% of the limit per slice, 100 redirects fit in two
+        assertEquals(100L, jdbcTemplate.queryForObject("SELECT granted FROM rate_limit_leases", Long.class));
+    }
+
+    @Test
+    void quotaLeasedByAnotherReplicaIsRefused() {
+        LeasedQuotaRateLimiting first = replica();
+        LeasedQuotaRateLimiting second = replica();
+        RedirectTarget target = target(10, ENDLESS_WINDOW_MS);
+
+        assertFalse(first.limitExceeded(target));
+        for (int i = 0; i < 9; i++) {
+            assertFalse(second.limitExceeded(target));
+        }
+
+        assertTrue(second.limitExceeded(target));
+        assertTrue(first.limitExceeded(target));
+    }
+
+    @Test
+    void databaseFailuresAreNotRetriedForEveryRedirect() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LeasedQuotaRateLimiting replica = replica(meterRegistry);
+        RedirectTarget target = target(10, ENDLESS_WINDOW_MS);
+        assertFalse(replica.limitExceeded(target));
+
+        jdbcTemplate.execute("DROP TABLE rate_limit_leases");
+        for (int i = 0; i < 100; i++) {
+            assertFalse(replica.limitExceeded(target));
+        }
+
+        assertEquals(1, meterRegistry.counter("rate-limiting.leased.failures").count());
+    }
+
+    @Test
+    void expiredLeasesAreDeleted() {
+        LeasedQuotaRateLimiting replica = replica();
+        replica.limitExceeded(target(10, 1));
+
+        sleep(5);
+        replica.evictExpiredLeases();
+
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_leases", Long.class));
+    }
+
+    private LeasedQuotaRateLimiting replica() {
+        return replica(new SimpleMeterRegistry());
+    }
+
+    private LeasedQuotaRateLimiting replica(SimpleMeterRegistry meterRegistry) {
+        LeasedQuotaRateLimiting replica = new LeasedQuotaRateLimiting(jdbcTemplate, transactionManager, meterRegistry);
+        replica.setSliceFraction(0.05);
+        replica.setMaxSlice(1000);
+        replica.setRetryAfterFailure(Duration.ofMinutes(1));
+        replica.init();
+        return replica;
+    }
+
+    private static RedirectTarget target(long maxRequests, long windowMs) {
+        return RedirectTarget.builder()
+                .linkId(UUID.randomUUID())
+                .shortened("abc")
+                .original("https://example.com")
+                .ownerId(UUID.randomUUID())
+                .ownerUsername("owner")
+                .maxRequests(maxRequests)
+                .maxRequestsWindowMs(windowMs)
+                .rateLimitStrategy(RateLimitStrategy.FIXED_WINDOW)
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.shrtr.core.services.shortcodes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FeistelPermutationTest {
+
+    private final FeistelPermutation permutation = new FeistelPermutation(Base62.capacity(8), 7046029254386353131L);
+
+    @Test
+    void invertGivesBackTheSequenceNumber() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long sequence = i < 1000 ? i : Math.floorMod(random.nextLong(), Base62.capacity(8));
+            assertEquals(sequence, permutation.invert(permutation.permute(sequence)));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.shrtr.core.services.shortcodes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shrtr.core.TestDatabase;
+import org.shrtr.core.domain.entities.Link;
+import org.shrtr.core.domain.repositories.LinksRepository;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.shrtr.core.services.LinkService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShortKeyBackfillTest {
+
+    private static final long KEY = 7046029254386353131L;
+    private static final int BLOCK_SIZE = 10;
+
+    private final FeistelPermutation permutation = new FeistelPermutation(Base62.capacity(8), KEY);
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private ShortCodeGenerator generator;
+    private ShortKeyBackfill backfill;
+
+    @BeforeEach
+    void createDatabase() {
+        TestDatabase database = new TestDatabase();
+        jdbcTemplate = database.getJdbcTemplate();
+        transactionManager = database.getTransactionManager();
+
+        generator = new ShortCodeGenerator(jdbcTemplate, transactionManager);
+        generator.setBlockSize(BLOCK_SIZE);
+        generator.setKey(KEY);
+        generator.init();
+
+        // Not started, the tests run its passes themselves
+        backfill = new ShortKeyBackfill(jdbcTemplate, transactionManager, generator);
+        backfill.setBatchSize(2);
+    }
+
+    @Test
+    void oldLinksGetTheKeyOfTheirCode() {
+        UUID old = insert(ShortCodeGenerator.toCode(permutation.permute(1000)), null);
+
+        backfill.backfill();
+
+        assertEquals(permutation.permute(1000), shortKey(old));
+    }
+
+    @Test
+    void oldLinksKeepNoKeyWhenTheirCodeMayHaveBeenGenerated() {
+        long generated = generator.nextKey();
+        insert(ShortCodeGenerator.toCode(generated), generated);
+        // Leased along with the first one, not handed out yet
+        long leased = permutation.permute(BLOCK_SIZE - 1);
+        UUID clashing = insert(ShortCodeGenerator.toCode(generated), null);
+        UUID leasedClashing = insert(ShortCodeGenerator.toCode(leased), null);
+        UUID free = insert(ShortCodeGenerator.toCode(permutation.permute(BLOCK_SIZE)), null);
+
+        backfill.backfill();
+
+        assertNull(shortKey(clashing));
+        assertNull(shortKey(leasedClashing));
+        assertEquals(permutation.permute(BLOCK_SIZE), shortKey(free));
+    }
+
+    @Test
+    void oldLinksLeftWithoutAKeyAreFoundByCodeOnceDone() {
+        long generated = generator.nextKey();
+        insert(ShortCodeGenerator.toCode(generated), generated);
+        String leased = ShortCodeGenerator.toCode(permutation.permute(BLOCK_SIZE - 1));
+        UUID keyless = insert(leased, null);
+        String backfilled = ShortCodeGenerator.toCode(permutation.permute(BLOCK_SIZE));
+        insert(backfilled, null);
+
+        backfill.backfill();
+
+        assertTrue(backfill.isComplete());
+        assertTrue(backfill.mayBeKeyless(leased));
+        assertFalse(backfill.mayBeKeyless(backfilled));
+
+        LinksRepository linksRepository = mock(LinksRepository.class);
+        Link link = new Link();
+        link.setId(keyless);
+        link.setShortened(leased);
+        when(linksRepository.findByShortened(leased)).thenReturn(Optional.of(link));
+        LinkService links = new LinkService(linksRepository, null, null, null, null, generator, backfill, null, null,
+                null, null, jdbcTemplate, transactionManager);
+
+        assertEquals(Optional.of(link), links.findLinkByShortened(leased));
+        assertEquals(Optional.empty(), links.findLinkByShortened(backfilled));
+        verify(linksRepository, never()).findByShortened(backfilled);
+    }
+
+    @Test
+    void oldLinksSharingACodeDoNotStopTheBackfill() {
+        String code = ShortCodeGenerator.toCode(permutation.permute(1000));
+        UUID first = insert(code, null);
+        UUID second = insert(code, null);
+        UUID other = insert(ShortCodeGenerator.toCode(permutation.permute(1001)), null);
+
+        backfill.backfill();
+
+        List<Long> keys = Arrays.asList(shortKey(first), shortKey(second));
+        assertTrue(keys.contains(permutation.permute(1000)));
+        assertTrue(keys.contains(null));
+        assertEquals(permutation.permute(1001), shortKey(other));
+    }
+
+    @Test
+    void generatedKeysSkipTheOnesOfOldLinks() {
+        long backfilled = permutation.permute(3);
+        insert(ShortCodeGenerator.toCode(backfilled), backfilled);
+
+        Set<Long> generated = new HashSet<>();
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            generated.add(generator.nextKey());
+        }
+
+        assertFalse(generated.contains(backfilled));
+        assertEquals(BLOCK_SIZE, generated.size());
+    }
+
+    @Test
+    void generatedKeysSkipTheCodesOfOldLinksNotBackfilledYet() {
+        long old = permutation.permute(5);
+        insert(ShortCodeGenerator.toCode(old), null);
+
+        Set<Long> generated = new HashSet<>();
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            generated.add(generator.nextKey());
+        }
+
+        assertFalse(generated.contains(old));
+        assertEquals(BLOCK_SIZE, generated.size());
+    }
+
+    private UUID insert(String shortened, Long shortKey) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update(
+                "INSERT INTO links (id, shortened, short_key, counter, redirect_counter) VALUES (?, ?, ?, 0, 0)",
+                UuidBytes.toBytes(id), shortened, shortKey);
+        return id;
+    }
+
+    private Long shortKey(UUID id) {
+        List<Long> keys = jdbcTemplate.queryForList("SELECT short_key FROM links WHERE id = ?", Long.class,
+                UuidBytes.toBytes(id));
+        return keys.get(0);
+    }
+}
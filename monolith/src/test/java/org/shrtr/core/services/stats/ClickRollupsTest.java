@@ -0,0 +1,97 @@
+package org.shrtr.core.services.stats;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shrtr.core.TestDatabase;
+import org.shrtr.core.domain.entities.ClickResolution;
+import org.shrtr.core.domain.repositories.UuidBytes;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClickRollupsTest {
+
+    private static final Duration MINUTE_RETENTION = Duration.ofDays(2);
+
+    private JdbcTemplate jdbcTemplate;
+    private ClickRollups rollups;
+    private final UUID linkId = UUID.randomUUID();
+
+    @BeforeEach
+    void createDatabase() {
+        TestDatabase database = new TestDatabase();
+        jdbcTemplate = database.getJdbcTemplate();
+
+        rollups = new ClickRollups(jdbcTemplate, database.getTransactionManager(), new SimpleMeterRegistry());
+        rollups.setFlushBatchSize(500);
+        rollups.setMinuteRetention(MINUTE_RETENTION);
+        rollups.setHourRetention(Duration.ofDays(90));
+        rollups.init();
+    }
+
+    @Test
+    void firstCompactionLeavesHoursThatLostMinutesAlone() {
+        LocalDateTime now = ClickRollups.now();
+        LocalDateTime partial = ClickResolution.HOUR.bucketOf(now.minus(MINUTE_RETENTION));
+        LocalDateTime complete = partial.plusHours(1);
+        for (int minute = 0; minute < 60; minute++) {
+            insert(ClickResolution.MINUTE, partial.plusMinutes(minute), 1);
+            insert(ClickResolution.MINUTE, complete.plusMinutes(minute), 1);
+        }
+        insert(ClickResolution.HOUR, partial, 60);
+        // What a previous run purged before it stopped
+        jdbcTemplate.update("DELETE FROM link_click_rollups WHERE resolution = 'MINUTE' AND bucket_start < ?",
+                now.minus(MINUTE_RETENTION));
+
+        rollups.compact();
+
+        assertEquals(60, clicks(ClickResolution.HOUR, partial));
+        assertEquals(60, clicks(ClickResolution.HOUR, complete));
+        assertEquals(jdbcTemplate.queryForObject(
+                        "SELECT SUM(clicks) FROM link_click_rollups WHERE resolution = 'HOUR' AND bucket_start >= ? AND bucket_start < ?",
+                        Long.class, ClickResolution.DAY.bucketOf(complete), ClickResolution.DAY.bucketOf(complete).plusDays(1)),
+                clicks(ClickResolution.DAY, ClickResolution.DAY.bucketOf(complete)));
+    }
+
+    @Test
+    void minutesArePurgedByWholeHours() {
+        LocalDateTime now = ClickRollups.now();
+        LocalDateTime partial = ClickResolution.HOUR.bucketOf(now.minus(MINUTE_RETENTION));
+        insert(ClickResolution.MINUTE, partial.minusMinutes(1), 1);
+        insert(ClickResolution.MINUTE, partial, 1);
+        insert(ClickResolution.MINUTE, partial.plusMinutes(59), 1);
+
+        rollups.compact();
+
+        assertEquals(2L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM link_click_rollups WHERE resolution = 'MINUTE'", Long.class));
+    }
+
+    @Test
+    void laterCompactionsRecomputeTheLastHour() {
+        rollups.compact();
+        LocalDateTime hour = ClickResolution.HOUR.bucketOf(ClickRollups.now());
+        insert(ClickResolution.MINUTE, hour, 2);
+        insert(ClickResolution.MINUTE, hour.plusMinutes(1), 3);
+
+        rollups.compact();
+
+        assertEquals(5, clicks(ClickResolution.HOUR, hour));
+    }
+
+    private void insert(ClickResolution resolution, LocalDateTime bucketStart, long clicks) {
+        jdbcTemplate.update("INSERT INTO link_click_rollups (link_id, resolution, bucket_start, clicks) VALUES (?, ?, ?, ?)",
+                UuidBytes.toBytes(linkId), resolution.name(), bucketStart, clicks);
+    }
+
+    private long clicks(ClickResolution resolution, LocalDateTime bucketStart) {
+        return jdbcTemplate.queryForObject(
+                "SELECT clicks FROM link_click_rollups WHERE link_id = ? AND resolution = ? AND bucket_start = ?",
+                Long.class, UuidBytes.toBytes(linkId), resolution.name(), bucketStart);
+    }
+}
@@ -0,0 +1,58 @@
+package org.shrtr.edge;
+
+import java.util.Arrays;
+
+/**
+ * Base62 short codes, the same encoding as the monolith's {@code org.shrtr.core.services.shortcodes.Base62}.
+ */
+final class Base62 {
+
+    static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    static final int CODE_LENGTH = 8;
+
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            DIGITS[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private Base62() {
+    }
+
+    /**
+     * Decodes {@code code[from, to)} without allocating.
+     *
+     * @return the key, or -1 if the range is not {@link #CODE_LENGTH} base62 digits
+     */
+    static long decode(CharSequence code, int from, int to) {
+        if (code == null || to - from != CODE_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = code.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * ALPHABET.length() + digit;
+        }
+        return value;
+    }
+
+    static long decode(CharSequence code) {
+        return code == null ? -1 : decode(code, 0, code.length());
+    }
+
+    static String encode(long value) {
+        char[] digits = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            digits[i] = ALPHABET.charAt((int) (value % ALPHABET.length()));
+            value /= ALPHABET.length();
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,165 @@
+package org.shrtr.edge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reads the link and user records of the monolith's binary event codec ({@code BinaryEventCodec}) into the
+ * same tree their JSON form parses to, keeping only the fields the edge uses.
+ */
+final class BinaryEvents {
+
+    static final String CONTENT_TYPE = "application/x-shrtr-event";
+
+    private static final int LINK = 1;
+    private static final int USER = 2;
+    private static final int BATCH = 0x80;
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final byte[] buffer;
+    private int position;
+
+    private BinaryEvents(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return the record, an array for a batch, or null for records the edge does not use
+     */
+    static JsonNode read(byte[] payload) {
+        BinaryEvents reader = new BinaryEvents(payload);
+        int type = reader.readByte();
+        if ((type & BATCH) == 0) {
+            return reader.readRecord(type);
+        }
+        ArrayNode records = NODES.arrayNode();
+        long size = reader.readLong();
+        for (long i = 0; i < size; i++) {
+            int length = (int) reader.readLong();
+            int recordEnd = reader.position + length;
+            JsonNode record = reader.readRecord(type & ~BATCH);
+            if (record != null) {
+                records.add(record);
+            }
+            // Skips the fields of newer versions
+            reader.position = recordEnd;
+        }
+        return records;
+    }
+
+    private JsonNode readRecord(int type) {
+        readByte(); // version, newer ones only append fields
+        return switch (type) {
+            case LINK -> readLink();
+            case USER -> readUser();
+            default -> null;
+        };
+    }
+
+    private ObjectNode readLink() {
+        ObjectNode link = NODES.objectNode();
+        link.put("id", readUuid().toString());
+        link.put("original", readString());
+        link.put("shortened", readString());
+        if (readBoolean()) {
+            link.put("shortKey", readLong());
+        }
+        readLong(); // counter
+        skipTimestamp(); // createdOn
+        skipTimestamp(); // updatedOn
+        if (readBoolean()) {
+            ObjectNode owner = link.putObject("owner");
+            owner.put("id", readUuid().toString());
+            owner.put("username", readString());
+            if (readBoolean()) {
+                owner.put("maxRequests", readLong());
+            }
+            if (readBoolean()) {
+                owner.put("maxRequestsWindowMs", readLong());
+            }
+            putStrategy(owner, readByte());
+        }
+        return link;
+    }
+
+    private ObjectNode readUser() {
+        ObjectNode user = NODES.objectNode();
+        user.put("id", readUuid().toString());
+        user.put("username", readString());
+        readString(); // firstName
+        readString(); // lastName
+        readBoolean(); // enabled
+        user.put("maxRequests", readLong());
+        user.put("maxRequestsWindowMs", readLong());
+        putStrategy(user, readByte());
+        return user;
+    }
+
+    private static void putStrategy(ObjectNode user, int value) {
+        RateLimitStrategy strategy = RateLimitStrategy.ofBinary(value);
+        if (strategy != null) {
+            user.put("rateLimitStrategy", strategy.name());
+        } else {
+            user.putNull("rateLimitStrategy");
+        }
+    }
+
+    private int readByte() {
+        if (position >= buffer.length) {
+            throw new IllegalArgumentException("Truncated event");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    private long readLong() {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private UUID readUuid() {
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | readByte();
+        }
+        for (int i = 0; i < 8; i++) {
+            lsb = (lsb << 8) | readByte();
+        }
+        return new UUID(msb, lsb);
+    }
+
+    private String readString() {
+        int length = (int) readLong() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.length - position) {
+            throw new IllegalArgumentException("Truncated event");
+        }
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private void skipTimestamp() {
+        if (readBoolean()) {
+            readLong();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.shrtr.edge;
+
+/**
+ * Settings of the edge server, read from the environment like the other services in docker-compose.
+ */
+final class EdgeConfig {
+
+    final int port = Integer.parseInt(env("EDGE_PORT", "8082"));
+    final int workerThreads = Integer.parseInt(env("EDGE_WORKER_THREADS", "0"));
+
+    final String databaseUrl = env("DATABASE_URL", "jdbc:mariadb://localhost:3306/shrtdb");
+    final String databaseUsername = env("DATABASE_USERNAME", "admin");
+    final String databasePassword = env("DATABASE_PASSWORD", "supersecret");
+    final int loadFetchSize = Integer.parseInt(env("EDGE_LOAD_FETCH_SIZE", "10000"));
+
+    final String rabbitHost = env("RABBITMQ_HOST", "localhost");
+    final int rabbitPort = Integer.parseInt(env("RABBITMQ_PORT", "5672"));
+    final String rabbitUsername = env("RABBITMQ_USERNAME", "guest");
+    final String rabbitPassword = env("RABBITMQ_PASSWORD", "guest");
+
+    final int redirectEventsCapacity = Integer.parseInt(env("EDGE_REDIRECT_EVENTS_CAPACITY", "65536"));
+    final int redirectEventsBatchSize = Integer.parseInt(env("EDGE_REDIRECT_EVENTS_BATCH_SIZE", "500"));
+
+    final int statsIntervalSeconds = Integer.parseInt(env("EDGE_STATS_INTERVAL_SECONDS", "10"));
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
@@ -0,0 +1,107 @@
+package org.shrtr.edge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the edge costs and delivers: startup time, memory per million links and requests per second. Logged
+ * periodically and served as JSON on {@code /stats}.
+ */
+final class EdgeStats {
+
+    private static final Logger log = LoggerFactory.getLogger(EdgeStats.class);
+
+    private final LongAdder requests = new LongAdder();
+    private final LinkIndex index;
+    private final RedirectEventPublisher publisher;
+
+    private long heapBeforeLoad;
+    private long rssBeforeLoad;
+    private volatile long startupMs;
+    private volatile long loadMs;
+    private volatile long heapPerMillionLinks;
+    private volatile long rssPerMillionLinks;
+    private volatile double requestsPerSecond;
+
+    EdgeStats(LinkIndex index, RedirectEventPublisher publisher) {
+        this.index = index;
+        this.publisher = publisher;
+    }
+
+    void request() {
+        requests.increment();
+    }
+
+    void loading() {
+        heapBeforeLoad = usedHeap();
+        rssBeforeLoad = residentSetSize();
+    }
+
+    void loaded(int links, long loadMs) {
+        this.loadMs = loadMs;
+        if (links > 0) {
+            heapPerMillionLinks = (usedHeap() - heapBeforeLoad) * 1_000_000 / links;
+            if (rssBeforeLoad >= 0) {
+                rssPerMillionLinks = (residentSetSize() - rssBeforeLoad) * 1_000_000 / links;
+            }
+        }
+    }
+
+    void started() {
+        startupMs = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        log.info("Started in {} ms, loaded {} links in {} ms, {} MB of heap and {} MB resident per million links",
+                startupMs, index.size(), loadMs, heapPerMillionLinks >> 20, rssPerMillionLinks >> 20);
+    }
+
+    void reportEvery(int seconds) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edge-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            requestsPerSecond = requests.sumThenReset() / (double) seconds;
+            log.info("{} requests/s, {} links, {} redirect events dropped",
+                    String.format("%.1f", requestsPerSecond), index.size(), publisher.dropped());
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    String toJson() {
+        return String.format("{\"startupMs\":%d,\"loadMs\":%d,\"links\":%d,\"heapBytesPerMillionLinks\":%d," +
+                        "\"residentBytesPerMillionLinks\":%d,\"residentBytes\":%d,\"requestsPerSecond\":%.1f," +
+                        "\"droppedRedirectEvents\":%d}",
+                startupMs, loadMs, index.size(), heapPerMillionLinks, rssPerMillionLinks, residentSetSize(),
+                requestsPerSecond, publisher.dropped());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return the resident set size of the process in bytes, -1 where /proc is not available
+     */
+    private static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,115 @@
+package org.shrtr.edge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the index up to date with the link.* events of the monolith, plus user.updated for rate limits.
+ * Events are read as JSON or, when their content type says so, in the monolith's binary form.
+ *
+ * The queue is bound before the snapshot is loaded and only consumed after, so no change made during the
+ * load is missed. Replaying a change the snapshot already has leaves the index as it was.
+ */
+final class LinkEventsFollower {
+
+    private static final Logger log = LoggerFactory.getLogger(LinkEventsFollower.class);
+
+    private final Channel channel;
+    private final LinkIndex index;
+    private final Map<UUID, Owner> owners;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String queue;
+
+    LinkEventsFollower(Connection connection, LinkIndex index, Map<UUID, Owner> owners) throws IOException {
+        this.channel = connection.createChannel();
+        this.index = index;
+        this.owners = owners;
+    }
+
+    void bind() throws IOException {
+        // Same declarations as RabbitEventService, so the edge can start before the monolith
+        channel.exchangeDeclare("link", BuiltinExchangeType.TOPIC, true);
+        channel.exchangeDeclare("user", BuiltinExchangeType.TOPIC, true);
+
+        // Every replica gets all the changes, on a queue that goes away with it
+        queue = channel.queueDeclare().getQueue();
+        channel.queueBind(queue, "link", "link.*");
+        channel.queueBind(queue, "user", "user.updated");
+    }
+
+    void start() throws IOException {
+        channel.basicConsume(queue, true, new DefaultConsumer(channel) {
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                try {
+                    JsonNode event = BinaryEvents.CONTENT_TYPE.equals(properties.getContentType())
+                            ? BinaryEvents.read(body)
+                            : objectMapper.readTree(body);
+                    if (event != null) {
+                        handle(envelope.getRoutingKey(), event);
+                    }
+                } catch (Exception e) {
+                    log.error("Could not apply {} event: {}", envelope.getRoutingKey(),
+                            new String(body, StandardCharsets.UTF_8), e);
+                }
+            }
+        });
+    }
+
+    private void handle(String routingKey, JsonNode event) {
+        switch (routingKey) {
+            case "link.created", "link.updated" -> put(event);
+            case "link.batch-created" -> event.forEach(this::put);
+            case "link.deleted" -> remove(event);
+            case "user.updated" -> updateOwner(event);
+            default -> {
+                // link.redirected and whatever comes next
+            }
+        }
+    }
+
+    private void put(JsonNode link) {
+        long key = key(link);
+        JsonNode ownerNode = link.get("owner");
+        if (key < 0 || ownerNode == null || ownerNode.isNull() || link.path("original").isNull()) {
+            return;
+        }
+        Owner owner = updateOwner(ownerNode);
+        index.put(key, new Redirect(UUID.fromString(link.get("id").asText()),
+                link.get("original").asText().getBytes(StandardCharsets.UTF_8), owner));
+    }
+
+    private void remove(JsonNode link) {
+        long key = key(link);
+        if (key >= 0) {
+            index.remove(key);
+        }
+    }
+
+    private Owner updateOwner(JsonNode user) {
+        Owner owner = owners.computeIfAbsent(UUID.fromString(user.get("id").asText()), Owner::new);
+        // Links whose owner was not loaded when the event was written only carry the owner's id
+        if (user.has("maxRequests")) {
+            owner.update(user.path("username").asText(), user.path("maxRequests").asLong(),
+                    user.path("maxRequestsWindowMs").asLong(),
+                    RateLimitStrategy.of(user.path("rateLimitStrategy").textValue()));
+        }
+        return owner;
+    }
+
+    private static long key(JsonNode link) {
+        JsonNode shortKey = link.get("shortKey");
+        if (shortKey != null && shortKey.isNumber()) {
+            return shortKey.asLong();
+        }
+        return Base62.decode(link.path("shortened").textValue());
+    }
+}
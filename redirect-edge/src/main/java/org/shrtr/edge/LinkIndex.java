@@ -0,0 +1,175 @@
+package org.shrtr.edge;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash table from short key to redirect, linear probing over a power-of-two table kept at
+ * most half full.
+ *
+ * Built for many concurrent readers, the event loops, and a single writer, the event consumer: lookups are
+ * optimistic reads that only fall back to the read lock when a write happened meanwhile.
+ */
+final class LinkIndex {
+
+    private static final long EMPTY = -1;
+    private static final long DELETED = -2;
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private int size;
+
+    LinkIndex(int expectedSize) {
+        table = new Table(capacityFor(expectedSize));
+    }
+
+    Redirect get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        Redirect redirect = table.get(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                redirect = table.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return redirect;
+    }
+
+    void put(long key, Redirect redirect) {
+        long stamp = lock.writeLock();
+        try {
+            if ((table.used + 1) * 2 > table.keys.length) {
+                // Tombstones are dropped on rehash, only grow when live entries need it
+                table = table.rehash(capacityFor(size + 1));
+            }
+            if (table.put(key, redirect)) {
+                size++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            if (table.remove(key)) {
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = 16;
+        while (capacity < entries * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        // splitmix64 finalizer, short keys are permuted already but may be sequential in the future
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (key ^ (key >>> 31));
+    }
+
+    private static final class Table {
+
+        final long[] keys;
+        final Redirect[] values;
+        final int mask;
+        // live entries plus tombstones
+        int used;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Redirect[capacity];
+            mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        Redirect get(long key) {
+            int slot = hash(key) & mask;
+            // Bounded so an optimistic read racing with a writer cannot spin forever
+            for (int probes = 0; probes <= mask; probes++) {
+                long current = keys[slot];
+                if (current == key) {
+                    return values[slot];
+                }
+                if (current == EMPTY) {
+                    return null;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * @return whether the key is new
+         */
+        boolean put(long key, Redirect redirect) {
+            int slot = hash(key) & mask;
+            int firstDeleted = -1;
+            while (true) {
+                long current = keys[slot];
+                if (current == key) {
+                    values[slot] = redirect;
+                    return false;
+                }
+                if (current == DELETED && firstDeleted < 0) {
+                    firstDeleted = slot;
+                } else if (current == EMPTY) {
+                    if (firstDeleted >= 0) {
+                        slot = firstDeleted;
+                    } else {
+                        used++;
+                    }
+                    values[slot] = redirect;
+                    keys[slot] = key;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        boolean remove(long key) {
+            int slot = hash(key) & mask;
+            while (true) {
+                long current = keys[slot];
+                if (current == key) {
+                    keys[slot] = DELETED;
+                    values[slot] = null;
+                    return true;
+                }
+                if (current == EMPTY) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        Table rehash(int capacity) {
+            Table rehashed = new Table(capacity);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] >= 0) {
+                    rehashed.put(keys[slot], values[slot]);
+                }
+            }
+            return rehashed;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.shrtr.edge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Loads every link and its owner into the index, streaming the rows so only the index itself is kept.
+ */
+final class LinkLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(LinkLoader.class);
+
+    private static final String SELECT_LINKS =
+            "SELECT l.id, l.short_key, l.shortened, l.original, u.id AS owner_id, u.username, u.max_requests, " +
+                    "u.max_requests_time_window_ms, u.rate_limit_strategy " +
+                    "FROM links l JOIN users u ON u.id = l.owner_id";
+
+    private final EdgeConfig config;
+
+    LinkLoader(EdgeConfig config) {
+        this.config = config;
+    }
+
+    int countLinks() throws SQLException {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM links")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * @return how many links were loaded
+     */
+    int load(LinkIndex index, Map<UUID, Owner> owners) throws SQLException {
+        int loaded = 0;
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(
+                     SELECT_LINKS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // A positive fetch size makes the MariaDB driver stream the result set
+            statement.setFetchSize(config.loadFetchSize);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    long key = resultSet.getLong("short_key");
+                    if (resultSet.wasNull()) {
+                        // Not backfilled yet by the monolith
+                        key = Base62.decode(resultSet.getString("shortened"));
+                    }
+                    if (key < 0) {
+                        continue;
+                    }
+
+                    UUID ownerId = uuid(resultSet.getBytes("owner_id"));
+                    Owner owner = owners.computeIfAbsent(ownerId, Owner::new);
+                    owner.update(resultSet.getString("username"), resultSet.getLong("max_requests"),
+                            resultSet.getLong("max_requests_time_window_ms"),
+                            RateLimitStrategy.of(resultSet.getString("rate_limit_strategy")));
+
+                    String original = resultSet.getString("original");
+                    if (original == null) {
+                        continue;
+                    }
+                    index.put(key, new Redirect(uuid(resultSet.getBytes("id")),
+                            original.getBytes(StandardCharsets.UTF_8), owner));
+                    if (++loaded % 1_000_000 == 0) {
+                        log.info("Loaded {} links", loaded);
+                    }
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(config.databaseUrl, config.databaseUsername, config.databasePassword);
+    }
+
+    static UUID uuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,31 @@
+package org.shrtr.edge;
+
+import java.util.UUID;
+
+/**
+ * The part of a user the edge needs, shared by all their links so a change of rate limit applies to all of
+ * them at once.
+ */
+final class Owner {
+
+    final UUID id;
+    volatile String username;
+    volatile long maxRequests;
+    volatile long maxRequestsWindowMs;
+    volatile RateLimitStrategy rateLimitStrategy = RateLimitStrategy.FIXED_WINDOW;
+
+    Owner(UUID id) {
+        this.id = id;
+    }
+
+    void update(String username, long maxRequests, long maxRequestsWindowMs, RateLimitStrategy rateLimitStrategy) {
+        this.username = username;
+        this.maxRequests = maxRequests;
+        this.maxRequestsWindowMs = maxRequestsWindowMs;
+        this.rateLimitStrategy = rateLimitStrategy;
+    }
+
+    boolean hasRedirectRateLimit() {
+        return maxRequests > 0 && maxRequestsWindowMs > 0;
+    }
+}
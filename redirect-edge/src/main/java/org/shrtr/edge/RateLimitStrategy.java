@@ -0,0 +1,135 @@
+package org.shrtr.edge;
+
+/**
+ * The monolith's rate limiting strategies, in the same order so the ordinals of its binary events match, with the
+ * decisions of its {@code RateLimitAlgorithm}s. State lives in the three longs of each {@link Redirect}, all
+ * timestamps are {@link System#nanoTime()} readings.
+ */
+enum RateLimitStrategy {
+
+    /**
+     * Windows starting at the first request of each one. State: window end, requests in the window.
+     */
+    FIXED_WINDOW {
+        @Override
+        boolean limitExceeded(Redirect state, boolean fresh, long maxRequests, long periodNanos, long now) {
+            if (fresh || now - state.state0 > 0) {
+                state.state0 = now + periodNanos;
+                state.state1 = 1;
+                return false;
+            }
+            if (state.state1 >= maxRequests) {
+                return true;
+            }
+            state.state1++;
+            return false;
+        }
+    },
+
+    /**
+     * A bucket of {@code maxRequests} tokens refilled continuously. State: last refill, raw bits of the tokens.
+     */
+    TOKEN_BUCKET {
+        @Override
+        boolean limitExceeded(Redirect state, boolean fresh, long maxRequests, long periodNanos, long now) {
+            double tokens;
+            if (fresh) {
+                tokens = maxRequests;
+            } else {
+                double refill = (double) (now - state.state0) * maxRequests / periodNanos;
+                tokens = Math.min(maxRequests, Double.longBitsToDouble(state.state1) + refill);
+            }
+
+            boolean exceeded = tokens < 1;
+            if (!exceeded) {
+                tokens -= 1;
+            }
+            state.state0 = now;
+            state.state1 = Double.doubleToRawLongBits(tokens);
+            return exceeded;
+        }
+    },
+
+    /**
+     * The previous fixed window weighted by how much of it the sliding one still overlaps. State: current window
+     * start, requests in the current window, requests in the previous window.
+     */
+    SLIDING_WINDOW_COUNTER {
+        @Override
+        boolean limitExceeded(Redirect state, boolean fresh, long maxRequests, long periodNanos, long now) {
+            if (fresh) {
+                state.state0 = now;
+                state.state1 = 1;
+                state.state2 = 0;
+                return false;
+            }
+
+            long elapsedWindows = (now - state.state0) / periodNanos;
+            if (elapsedWindows == 1) {
+                state.state0 += periodNanos;
+                state.state2 = state.state1;
+                state.state1 = 0;
+            } else if (elapsedWindows > 1) {
+                state.state0 += elapsedWindows * periodNanos;
+                state.state2 = 0;
+                state.state1 = 0;
+            }
+
+            double previousWeight = (double) (periodNanos - (now - state.state0)) / periodNanos;
+            double estimate = state.state2 * previousWeight + state.state1;
+            if (estimate >= maxRequests) {
+                return true;
+            }
+            state.state1++;
+            return false;
+        }
+    },
+
+    /**
+     * Generic cell rate algorithm. State: theoretical arrival time of the next request.
+     */
+    GCRA {
+        @Override
+        boolean limitExceeded(Redirect state, boolean fresh, long maxRequests, long periodNanos, long now) {
+            long emissionInterval = Math.max(1, periodNanos / maxRequests);
+            long theoreticalArrival = fresh || now - state.state0 > 0 ? now : state.state0;
+            long next = theoreticalArrival + emissionInterval;
+
+            if (next - now > periodNanos) {
+                return true;
+            }
+            state.state0 = next;
+            return false;
+        }
+    };
+
+    private static final RateLimitStrategy[] VALUES = values();
+
+    /**
+     * Accounts for one request, the caller holds the lock of {@code state}.
+     *
+     * @param fresh whether the state is empty, or was left by another strategy, and must be initialised
+     * @return whether the request goes over the limit
+     */
+    abstract boolean limitExceeded(Redirect state, boolean fresh, long maxRequests, long periodNanos, long now);
+
+    /**
+     * @return the strategy of that name, or the fixed window of users created before strategies were selectable,
+     * like {@code User.getRateLimitStrategy}, and of strategies this edge does not know yet
+     */
+    static RateLimitStrategy of(String name) {
+        for (RateLimitStrategy strategy : VALUES) {
+            if (strategy.name().equals(name)) {
+                return strategy;
+            }
+        }
+        return FIXED_WINDOW;
+    }
+
+    /**
+     * @return the strategy written as this enum ordinal plus one by the binary codec, or null for none or unknown
+     */
+    static RateLimitStrategy ofBinary(int value) {
+        return value == 0 || value > VALUES.length ? null : VALUES[value - 1];
+    }
+}
@@ -0,0 +1,54 @@
+package org.shrtr.edge;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A link as served by the edge. The original is kept as bytes, it goes out as a header as it is.
+ */
+final class Redirect {
+
+    final long idHigh;
+    final long idLow;
+    final byte[] original;
+    final Owner owner;
+
+    // State of the owner's rate limit, per edge replica like InMemoryRateLimiting in the monolith. Fields rather
+    // than an array, there is one per link. What they hold depends on the strategy, see RateLimitStrategy
+    long state0;
+    long state1;
+    long state2;
+    private RateLimitStrategy limitedWith;
+
+    Redirect(UUID id, byte[] original, Owner owner) {
+        this.idHigh = id.getMostSignificantBits();
+        this.idLow = id.getLeastSignificantBits();
+        this.original = original;
+        this.owner = owner;
+    }
+
+    UUID id() {
+        return new UUID(idHigh, idLow);
+    }
+
+    /**
+     * Counts a redirect against the owner's rate limit, with the owner's strategy. State left by another
+     * strategy, because the owner switched, is discarded.
+     *
+     * @param now a {@link System#nanoTime()} reading
+     * @return whether the redirect goes over the limit
+     */
+    boolean limitExceeded(long now) {
+        long maxRequests = owner.maxRequests;
+        long windowMs = owner.maxRequestsWindowMs;
+        RateLimitStrategy strategy = owner.rateLimitStrategy;
+        if (maxRequests <= 0 || windowMs <= 0) {
+            return false;
+        }
+        synchronized (this) {
+            boolean fresh = limitedWith != strategy;
+            limitedWith = strategy;
+            return strategy.limitExceeded(this, fresh, maxRequests, TimeUnit.MILLISECONDS.toNanos(windowMs), now);
+        }
+    }
+}
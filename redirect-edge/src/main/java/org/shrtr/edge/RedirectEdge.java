@@ -0,0 +1,93 @@
+package org.shrtr.edge;
+
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves redirects without the monolith: the links table is loaded into memory at startup and kept up to
+ * date from the link.* events, so a redirect never leaves the process. Rate limits follow each owner's strategy
+ * like the monolith's in-memory rate limiting, per replica, and link.redirected events are published as there.
+ *
+ * Run with {@code java -jar target/redirect-edge.jar}, configured through the environment, see {@link EdgeConfig}.
+ */
+public class RedirectEdge {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectEdge.class);
+
+    public static void main(String[] args) throws Exception {
+        EdgeConfig config = new EdgeConfig();
+
+        ConnectionFactory rabbit = new ConnectionFactory();
+        rabbit.setHost(config.rabbitHost);
+        rabbit.setPort(config.rabbitPort);
+        rabbit.setUsername(config.rabbitUsername);
+        rabbit.setPassword(config.rabbitPassword);
+        Connection connection = rabbit.newConnection("redirect-edge");
+
+        LinkLoader loader = new LinkLoader(config);
+        LinkIndex index = new LinkIndex(loader.countLinks());
+        Map<UUID, Owner> owners = new ConcurrentHashMap<>();
+
+        LinkEventsFollower follower = new LinkEventsFollower(connection, index, owners);
+        follower.bind();
+
+        RedirectEventPublisher publisher = new RedirectEventPublisher(connection,
+                config.redirectEventsCapacity, config.redirectEventsBatchSize);
+        EdgeStats stats = new EdgeStats(index, publisher);
+
+        stats.loading();
+        long loadStart = System.currentTimeMillis();
+        int loaded = loader.load(index, owners);
+        stats.loaded(loaded, System.currentTimeMillis() - loadStart);
+
+        follower.start();
+        publisher.start();
+
+        EventLoopGroup boss = new NioEventLoopGroup(1);
+        EventLoopGroup workers = new NioEventLoopGroup(config.workerThreads);
+        RedirectHandler handler = new RedirectHandler(index, publisher, stats);
+        Channel server = new ServerBootstrap()
+                .group(boss, workers)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(new HttpServerCodec(), handler);
+                    }
+                })
+                .bind(config.port)
+                .sync()
+                .channel();
+
+        stats.started();
+        stats.reportEvery(config.statsIntervalSeconds);
+        log.info("Serving redirects on port {}", config.port);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close().syncUninterruptibly();
+                boss.shutdownGracefully();
+                workers.shutdownGracefully().syncUninterruptibly();
+                publisher.stop();
+                connection.close();
+            } catch (Exception e) {
+                log.warn("Could not shut down cleanly", e);
+            }
+        }, "redirect-edge-shutdown"));
+
+        server.closeFuture().sync();
+    }
+}
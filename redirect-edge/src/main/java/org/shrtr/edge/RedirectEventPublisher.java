@@ -0,0 +1,111 @@
+package org.shrtr.edge;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes link.redirected events, in the monolith's format, from a dedicated thread so event loops only
+ * enqueue. Events that do not fit in the buffer are dropped and counted.
+ */
+final class RedirectEventPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectEventPublisher.class);
+    private static final AMQP.BasicProperties JSON = new AMQP.BasicProperties.Builder()
+            .contentType("application/json")
+            .build();
+
+    private final Channel channel;
+    private final ArrayBlockingQueue<Redirected> buffer;
+    private final int batchSize;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread publisher;
+    private volatile boolean running;
+
+    RedirectEventPublisher(Connection connection, int capacity, int batchSize) throws IOException {
+        this.channel = connection.createChannel();
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.publisher = new Thread(this::publishLoop, "redirect-events-publisher");
+        this.publisher.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        publisher.start();
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        publisher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    void offer(Redirect redirect, long key, long timestampMs, long latencyNanos) {
+        if (!buffer.offer(new Redirected(redirect, key, timestampMs, latencyNanos))) {
+            dropped.increment();
+        }
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    private void publishLoop() {
+        List<Redirected> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                Redirected first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                for (Redirected redirected : batch) {
+                    channel.basicPublish("link", "link.redirected", JSON, objectMapper.writeValueAsBytes(redirected.toEvent()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Could not publish {} redirect events", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private record Redirected(Redirect redirect, long key, long timestampMs, long latencyNanos) {
+
+        LinkRedirectedEvent toEvent() {
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMs), ZoneId.systemDefault());
+            return new LinkRedirectedEvent(
+                    timestamp.format(DateTimeFormatter.ISO_DATE_TIME),
+                    redirect.id().toString(),
+                    new String(redirect.original, StandardCharsets.UTF_8),
+                    Base62.encode(key),
+                    redirect.owner.username,
+                    TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        }
+    }
+
+    // Same fields as org.shrtr.core.events.LinkRedirectedEvent
+    record LinkRedirectedEvent(String timestamp, String id, String original, String shortened,
+                               String ownerUsername, long latency) {
+    }
+}
@@ -0,0 +1,106 @@
+package org.shrtr.edge;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.*;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Answers {@code /r/{shortened}} like the monolith's RedirectController: 302 to the original, 404 for unknown
+ * codes and 429 over the owner's rate limit, with the owner's strategy. Nothing else is served but {@code /stats}.
+ */
+@ChannelHandler.Sharable
+final class RedirectHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectHandler.class);
+    private static final String PREFIX = "/r/";
+
+    private final LinkIndex index;
+    private final RedirectEventPublisher publisher;
+    private final EdgeStats stats;
+
+    RedirectHandler(LinkIndex index, RedirectEventPublisher publisher, EdgeStats stats) {
+        this.index = index;
+        this.publisher = publisher;
+        this.stats = stats;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        try {
+            // Requests have no body worth reading, the content that follows them is just released
+            if (msg instanceof HttpRequest request) {
+                respond(ctx, request);
+            }
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    private void respond(ChannelHandlerContext ctx, HttpRequest request) {
+        long start = System.nanoTime();
+        stats.request();
+
+        String uri = request.uri();
+        int end = uri.indexOf('?');
+        end = end < 0 ? uri.length() : end;
+
+        FullHttpResponse response;
+        if (request.method() != HttpMethod.GET && request.method() != HttpMethod.HEAD) {
+            response = empty(HttpResponseStatus.METHOD_NOT_ALLOWED);
+        } else if (uri.startsWith(PREFIX)) {
+            response = redirect(uri, end, start);
+        } else if (uri.regionMatches(0, "/stats", 0, end) && end == "/stats".length()) {
+            ByteBuf body = Unpooled.copiedBuffer(stats.toJson(), StandardCharsets.UTF_8);
+            response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, body);
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        } else {
+            response = empty(HttpResponseStatus.NOT_FOUND);
+        }
+
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        HttpUtil.setKeepAlive(response, keepAlive);
+        if (keepAlive) {
+            ctx.writeAndFlush(response, ctx.voidPromise());
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private FullHttpResponse redirect(String uri, int end, long start) {
+        long key = Base62.decode(uri, PREFIX.length(), end);
+        Redirect redirect = key < 0 ? null : index.get(key);
+        if (redirect == null) {
+            return empty(HttpResponseStatus.NOT_FOUND);
+        }
+
+        if (redirect.limitExceeded(start)) {
+            return empty(HttpResponseStatus.TOO_MANY_REQUESTS);
+        }
+
+        FullHttpResponse response = empty(HttpResponseStatus.FOUND);
+        response.headers().set(HttpHeaderNames.LOCATION, new AsciiString(redirect.original, false));
+        publisher.offer(redirect, key, System.currentTimeMillis(), System.nanoTime() - start);
+        return response;
+    }
+
+    private static FullHttpResponse empty(HttpResponseStatus status) {
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.EMPTY_BUFFER);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.debug("Closing connection after error", cause);
+        ctx.close();
+    }
+}
@@ -0,0 +1,69 @@
+package org.shrtr.edge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryEventsTest {
+
+    /**
+     * Written by the monolith's {@code BinaryEventCodec}, its {@code BinaryEventCodecTest} checks it still writes
+     * exactly these bytes.
+     */
+    private static final String LINK_BATCH = "8102de01016f1c2a3b4d5e4f60817293a4b5c6d7e83c68747470733a2f2f6578616d706c652e636f"
+            + "6d2f736f6d652f7061676512303030306162636401aab4de75540180f897b0ccbceb0501808094f8"
+            + "8cc1eb05010a1b2c3d4e5f406182738495a6b7c8d90c6f776e657201c80101c0a90702";
+    private static final String USER = "02010a1b2c3d4e5f406182738495a6b7c8d90c6f776e6572084164610001c801c0a907030180f897"
+            + "b0ccbceb0501808094f88cc1eb05";
+
+    @Test
+    void readsLinkBatchesOfTheMonolith() {
+        JsonNode links = BinaryEvents.read(HexFormat.of().parseHex(LINK_BATCH));
+
+        assertTrue(links.isArray());
+        assertEquals(1, links.size());
+        JsonNode link = links.get(0);
+        assertEquals("6f1c2a3b-4d5e-4f60-8172-93a4b5c6d7e8", link.get("id").asText());
+        assertEquals("https://example.com/some/page", link.get("original").asText());
+        assertEquals("0000abcd", link.get("shortened").asText());
+        assertEquals(123_456_789L, link.get("shortKey").asLong());
+        JsonNode owner = link.get("owner");
+        assertEquals("0a1b2c3d-4e5f-4061-8273-8495a6b7c8d9", owner.get("id").asText());
+        assertEquals("owner", owner.get("username").asText());
+        assertEquals(100, owner.get("maxRequests").asLong());
+        assertEquals(60_000, owner.get("maxRequestsWindowMs").asLong());
+        assertEquals("TOKEN_BUCKET", owner.get("rateLimitStrategy").asText());
+    }
+
+    @Test
+    void readsUsersOfTheMonolith() {
+        JsonNode user = BinaryEvents.read(HexFormat.of().parseHex(USER));
+
+        assertFalse(user.isArray());
+        assertEquals("0a1b2c3d-4e5f-4061-8273-8495a6b7c8d9", user.get("id").asText());
+        assertEquals("owner", user.get("username").asText());
+        assertEquals(100, user.get("maxRequests").asLong());
+        assertEquals(60_000, user.get("maxRequestsWindowMs").asLong());
+        assertEquals("SLIDING_WINDOW_COUNTER", user.get("rateLimitStrategy").asText());
+    }
+
+    @Test
+    void ignoresRecordsTheEdgeDoesNotUse() {
+        // A role, type 3
+        assertNull(BinaryEvents.read(new byte[]{3, 1}));
+    }
+
+    @Test
+    void rejectsTruncatedEvents() {
+        byte[] user = HexFormat.of().parseHex(USER);
+        assertThrows(IllegalArgumentException.class, () -> BinaryEvents.read(Arrays.copyOf(user, 20)));
+    }
+}
@@ -0,0 +1,80 @@
+package org.shrtr.edge;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedirectTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void fixedWindowsLetABurstThroughOnEitherSideOfTheirEnd() {
+        Redirect redirect = redirect(RateLimitStrategy.FIXED_WINDOW, 10);
+
+        assertEquals(10, admitted(redirect, 0, 20));
+        assertEquals(10, admitted(redirect, SECOND + 1, 20));
+    }
+
+    @Test
+    void slidingWindowCountersHoldTheLimitAcrossWindowEdges() {
+        Redirect redirect = redirect(RateLimitStrategy.SLIDING_WINDOW_COUNTER, 10);
+
+        assertEquals(10, admitted(redirect, SECOND - 10, 20));
+        assertEquals(0, admitted(redirect, SECOND + 10, 20));
+    }
+
+    @Test
+    void gcraSpacesRequestsOutAfterABurst() {
+        Redirect redirect = redirect(RateLimitStrategy.GCRA, 10);
+
+        assertEquals(10, admitted(redirect, 0, 20));
+        assertTrue(redirect.limitExceeded(SECOND / 20));
+        assertFalse(redirect.limitExceeded(SECOND / 10));
+    }
+
+    @Test
+    void switchingStrategiesStartsAfresh() {
+        Owner owner = owner(RateLimitStrategy.TOKEN_BUCKET, 10);
+        Redirect redirect = new Redirect(UUID.randomUUID(), "https://example.com".getBytes(StandardCharsets.UTF_8),
+                owner);
+        assertEquals(10, admitted(redirect, 0, 20));
+
+        owner.update("owner", 10, 1000, RateLimitStrategy.FIXED_WINDOW);
+
+        assertEquals(10, admitted(redirect, 1, 20));
+    }
+
+    @Test
+    void unknownStrategiesFallBackToFixedWindows() {
+        assertEquals(RateLimitStrategy.FIXED_WINDOW, RateLimitStrategy.of(null));
+        assertEquals(RateLimitStrategy.FIXED_WINDOW, RateLimitStrategy.of("LEAKY_BUCKET"));
+        assertEquals(RateLimitStrategy.GCRA, RateLimitStrategy.of("GCRA"));
+    }
+
+    private static int admitted(Redirect redirect, long now, int requests) {
+        int admitted = 0;
+        for (int i = 0; i < requests; i++) {
+            if (!redirect.limitExceeded(now)) {
+                admitted++;
+            }
+        }
+        return admitted;
+    }
+
+    private static Redirect redirect(RateLimitStrategy strategy, long maxRequests) {
+        return new Redirect(UUID.randomUUID(), "https://example.com".getBytes(StandardCharsets.UTF_8),
+                owner(strategy, maxRequests));
+    }
+
+    private static Owner owner(RateLimitStrategy strategy, long maxRequests) {
+        Owner owner = new Owner(UUID.randomUUID());
+        owner.update("owner", maxRequests, 1000, strategy);
+        return owner;
+    }
+}